@@ -1,14 +1,43 @@
 package com.serhat.autosub;
 
 import android.app.Application;
+import android.content.Context;
 
 import androidx.appcompat.app.AppCompatDelegate;
 
 public class App extends Application {
 
+    private ModelRegistry modelRegistry;
+    private TaskScheduler taskScheduler;
+    private TranscriptIndex transcriptIndex;
+
     @Override
     public void onCreate() {
         super.onCreate();
         AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_YES);
+        taskScheduler = new TaskScheduler();
+        taskScheduler.submit(TaskScheduler.Pool.IO, TaskScheduler.PRIORITY_LOW, "prune journals",
+                job -> EditJournal.prune(this));
+        transcriptIndex = new TranscriptIndex(this);
+        modelRegistry = new ModelRegistry(this);
+        modelRegistry.preloadLastUsed();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        modelRegistry.onTrimMemory(level);
+    }
+
+    public static ModelRegistry getModelRegistry(Context context) {
+        return ((App) context.getApplicationContext()).modelRegistry;
+    }
+
+    public static TaskScheduler getTaskScheduler(Context context) {
+        return ((App) context.getApplicationContext()).taskScheduler;
+    }
+
+    public static TranscriptIndex getTranscriptIndex(Context context) {
+        return ((App) context.getApplicationContext()).transcriptIndex;
     }
 }
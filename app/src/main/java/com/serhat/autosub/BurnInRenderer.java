@@ -0,0 +1,465 @@
+package com.serhat.autosub;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import com.arthenica.ffmpegkit.FFmpegKit;
+import com.arthenica.ffmpegkit.FFmpegKitConfig;
+import com.arthenica.ffmpegkit.FFmpegSession;
+import com.arthenica.ffmpegkit.FFprobeKit;
+import com.arthenica.ffmpegkit.FFprobeSession;
+import com.arthenica.ffmpegkit.MediaInformation;
+import com.arthenica.ffmpegkit.ReturnCode;
+import com.arthenica.ffmpegkit.StreamInformation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Burns subtitles into a video by splitting it at keyframes into ranges that are encoded by
+ * concurrent FFmpeg sessions, each with its own time-shifted SRT. The encoded ranges are joined
+ * with the concat demuxer and the original audio is copied alongside, so no frame is encoded twice.
+ */
+public class BurnInRenderer {
+    private static final String TAG = "BurnInRenderer";
+    private static final double MIN_SEGMENT_SECONDS = 10;
+    // Seek slightly inside/outside a keyframe so rounding in ffprobe's pts_time never selects a neighbour.
+    private static final double SEEK_EPSILON = 0.0005;
+    // Above this share of re-encoded time, stream copying saves too little to be worth the extra cuts.
+    private static final double MAX_SMART_DIRTY_FRACTION = 0.8;
+
+    private final Context context;
+    private final Uri videoUri;
+    private final String fontName;
+    private final JobHandle job;
+    private final List<FFmpegSession> activeSessions = new ArrayList<>();
+    private ExportProgress progress;
+    private boolean openGops;
+
+    public BurnInRenderer(Context context, Uri videoUri, String fontName, JobHandle job) {
+        this.context = context;
+        this.videoUri = videoUri;
+        this.fontName = fontName;
+        this.job = job;
+    }
+
+    public void setProgress(ExportProgress progress) {
+        this.progress = progress;
+    }
+
+    /** A half-open time range of the source, in seconds. */
+    static class Range {
+        final double start;
+        final double end;
+        final boolean burn;
+
+        Range(double start, double end) {
+            this(start, end, true);
+        }
+
+        Range(double start, double end, boolean burn) {
+            this.start = start;
+            this.end = end;
+            this.burn = burn;
+        }
+    }
+
+    /**
+     * Returns the presentation times of the video keyframes in seconds, in ascending order, and
+     * notes whether any keyframe after the first opens a GOP whose frames reference the one before.
+     */
+    List<Double> probeKeyframes() throws IOException {
+        String command = String.format("-v error -select_streams v:0 -show_entries packet=pts_time,flags -of csv=p=0 %s",
+                input());
+        FFprobeSession session = FFprobeKit.execute(command);
+        if (!ReturnCode.isSuccess(session.getReturnCode())) {
+            throw new IOException("Could not probe keyframes: " + session.getOutput());
+        }
+        List<Double> keyframes = new ArrayList<>();
+        openGops = false;
+        String output = session.getOutput();
+        int lineStart = 0;
+        while (lineStart < output.length()) {
+            int lineEnd = output.indexOf('\n', lineStart);
+            if (lineEnd == -1) lineEnd = output.length();
+            int comma = output.indexOf(',', lineStart);
+            if (comma != -1 && comma + 1 < lineEnd) {
+                try {
+                    double pts = Double.parseDouble(output.substring(lineStart, comma));
+                    if (output.charAt(comma + 1) == 'K') {
+                        keyframes.add(pts);
+                    } else if (keyframes.size() > 1 && pts < keyframes.get(keyframes.size() - 1)) {
+                        // Packets are in decode order, so this is a leading frame of an open GOP.
+                        openGops = true;
+                    }
+                } catch (NumberFormatException ignored) {
+                    // pts_time is N/A for packets without a timestamp.
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        Collections.sort(keyframes);
+        return keyframes;
+    }
+
+    /** Splits {@code [0, duration)} into at most {@code count} ranges that all start on a keyframe. */
+    static List<Range> splitAtKeyframes(List<Double> keyframes, double duration, int count) {
+        count = (int) Math.max(1, Math.min(count, duration / MIN_SEGMENT_SECONDS));
+        List<Range> ranges = new ArrayList<>();
+        double start = 0;
+        int k = 0;
+        for (int i = 1; i < count; i++) {
+            double target = duration * i / count;
+            while (k < keyframes.size() && keyframes.get(k) < target) {
+                k++;
+            }
+            if (k == keyframes.size()) break;
+            double cut = keyframes.get(k);
+            if (cut - start >= MIN_SEGMENT_SECONDS && duration - cut >= MIN_SEGMENT_SECONDS) {
+                ranges.add(new Range(start, cut));
+                start = cut;
+            }
+        }
+        ranges.add(new Range(start, duration));
+        return ranges;
+    }
+
+    /** Burns {@code subtitles} into {@code outputFile} using up to {@code parallelism} concurrent encodes. */
+    public void renderSegmented(List<SubtitleGenerator.SubtitleEntry> subtitles, double duration, int parallelism,
+                                File outputFile) throws IOException {
+        File workDir = createWorkDir();
+        try {
+            List<Range> ranges = splitAtKeyframes(probeKeyframes(), duration, parallelism);
+            Log.d(TAG, "Burning " + ranges.size() + " segments in parallel");
+            int threadsPerSession = Math.max(1, Runtime.getRuntime().availableProcessors() / ranges.size());
+
+            List<String> commands = new ArrayList<>();
+            List<File> parts = new ArrayList<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                Range range = ranges.get(i);
+                File srt = new File(workDir, "part_" + i + ".srt");
+                writeShiftedSrt(subtitles, range, srt);
+                File part = new File(workDir, "part_" + i + ".mp4");
+                parts.add(part);
+                commands.add(String.format(Locale.US,
+                        "-y -ss %.6f -t %.6f -i %s -an -sn -vf subtitles=%s:force_style='FontName=%s' -q:v 1 -threads %d %s",
+                        range.start, range.end - range.start, input(), srt.getAbsolutePath(), fontName,
+                        threadsPerSession, part.getAbsolutePath()));
+            }
+            runConcurrently(commands, ranges, ranges.size());
+            concat(parts, workDir, outputFile);
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    /**
+     * Re-encodes only the GOPs that overlap a cue and stream-copies the rest, matching the source
+     * codec so the pieces can be joined, with at most {@code parallelism} FFmpeg sessions at once.
+     * Returns false without writing {@code outputFile} when that is not possible or not worthwhile,
+     * in which case the caller should burn the whole video.
+     */
+    public boolean renderSmart(List<SubtitleGenerator.SubtitleEntry> subtitles, double duration, int parallelism,
+                               File outputFile) throws IOException {
+        StreamInformation source = probeVideoStream(input());
+        String encoder = source != null ? matchingEncoder(source) : null;
+        if (encoder == null) {
+            return false;
+        }
+        List<Range> runs = classifyGops(probeKeyframes(), duration, subtitles);
+        if (openGops) {
+            // A copied run would start with frames that reference the re-encoded GOP before it.
+            Log.d(TAG, "Smart render not possible: the video has open GOPs");
+            return false;
+        }
+        double dirty = 0;
+        for (Range run : runs) {
+            if (run.burn) dirty += run.end - run.start;
+        }
+        if (runs.size() < 2 || dirty > duration * MAX_SMART_DIRTY_FRACTION) {
+            Log.d(TAG, "Smart render not worthwhile: " + runs.size() + " runs, " + dirty + " s of " + duration + " s dirty");
+            return false;
+        }
+        Log.d(TAG, "Smart render: re-encoding " + dirty + " s of " + duration + " s in " + runs.size() + " runs");
+
+        int sessions = Math.max(1, Math.min(parallelism, runs.size()));
+        int threadsPerSession = Math.max(1, Runtime.getRuntime().availableProcessors() / sessions);
+        File workDir = createWorkDir();
+        try {
+            List<String> commands = new ArrayList<>();
+            List<File> parts = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i++) {
+                Range run = runs.get(i);
+                File part = new File(workDir, "part_" + i + ".ts");
+                parts.add(part);
+                if (run.burn) {
+                    File srt = new File(workDir, "part_" + i + ".srt");
+                    writeShiftedSrt(subtitles, run, srt);
+                    commands.add(String.format(Locale.US,
+                            "-y -ss %.6f -t %.6f -i %s -map 0:v:0 -vf subtitles=%s:force_style='FontName=%s' %s -threads %d -f mpegts %s",
+                            Math.max(0, run.start - SEEK_EPSILON), run.end - run.start, input(),
+                            srt.getAbsolutePath(), fontName, encoder, threadsPerSession, part.getAbsolutePath()));
+                } else {
+                    commands.add(String.format(Locale.US,
+                            "-y -ss %.6f -t %.6f -i %s -map 0:v:0 -c copy -f mpegts %s",
+                            run.start + SEEK_EPSILON, run.end - run.start - 2 * SEEK_EPSILON, input(),
+                            part.getAbsolutePath()));
+                }
+            }
+            try {
+                runConcurrently(commands, runs, sessions);
+            } catch (IOException e) {
+                if (job.isCancelled()) {
+                    throw e;
+                }
+                // Most likely the encoder is missing from this FFmpeg build.
+                Log.e(TAG, "Smart render failed, falling back to a full burn", e);
+                if (progress != null) {
+                    progress.reset();
+                }
+                return false;
+            }
+            // Each part repeats its parameter sets at every keyframe, but a decoder cannot switch
+            // profile, level, size or pixel format mid-stream, so those have to match the source.
+            for (File part : parts) {
+                if (!sameParameters(source, probeVideoStream(part.getAbsolutePath()))) {
+                    Log.d(TAG, "Smart render parts do not match the source stream, falling back to a full burn");
+                    if (progress != null) {
+                        progress.reset();
+                    }
+                    return false;
+                }
+            }
+            concat(parts, workDir, outputFile);
+            return true;
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    /** The first video stream of {@code path}, or null if it cannot be probed. */
+    private static StreamInformation probeVideoStream(String path) {
+        MediaInformation information = FFprobeKit.getMediaInformation(path).getMediaInformation();
+        if (information == null || information.getStreams() == null) {
+            return null;
+        }
+        for (StreamInformation stream : information.getStreams()) {
+            if ("video".equals(stream.getType())) {
+                return stream;
+            }
+        }
+        return null;
+    }
+
+    /** Encoder arguments producing a stream compatible with {@code source}, or null if unknown. */
+    private static String matchingEncoder(StreamInformation source) {
+        String pixelFormat = source.getStringProperty("pix_fmt");
+        String pixelArgs = pixelFormat != null ? " -pix_fmt " + pixelFormat : "";
+        String codec = source.getCodec();
+        if ("h264".equals(codec)) {
+            String profile = source.getStringProperty("profile");
+            Long level = source.getNumberProperty("level");
+            String profileArgs = "";
+            if ("High".equals(profile) || "Main".equals(profile)) {
+                profileArgs = " -profile:v " + profile.toLowerCase(Locale.US);
+            } else if ("Baseline".equals(profile) || "Constrained Baseline".equals(profile)) {
+                profileArgs = " -profile:v baseline";
+            }
+            if (level != null && level > 0) {
+                profileArgs += String.format(Locale.US, " -level %.1f", level / 10.0);
+            }
+            return "-c:v libx264 -crf 18 -preset veryfast" + profileArgs + pixelArgs;
+        } else if ("hevc".equals(codec)) {
+            return "-c:v libx265 -crf 20 -preset veryfast -tag:v hvc1" + pixelArgs;
+        } else if ("mpeg4".equals(codec)) {
+            return "-c:v mpeg4 -q:v 1" + pixelArgs;
+        }
+        Log.d(TAG, "No matching encoder for " + codec);
+        return null;
+    }
+
+    private static boolean sameParameters(StreamInformation source, StreamInformation part) {
+        return part != null
+                && Objects.equals(source.getCodec(), part.getCodec())
+                && Objects.equals(source.getStringProperty("profile"), part.getStringProperty("profile"))
+                && Objects.equals(source.getNumberProperty("level"), part.getNumberProperty("level"))
+                && Objects.equals(source.getWidth(), part.getWidth())
+                && Objects.equals(source.getHeight(), part.getHeight())
+                && Objects.equals(source.getStringProperty("pix_fmt"), part.getStringProperty("pix_fmt"));
+    }
+
+    /**
+     * Splits the video into GOPs and merges neighbours into runs that either overlap a cue and must
+     * be burned, or are free of subtitles and can be copied.
+     */
+    static List<Range> classifyGops(List<Double> keyframes, double duration,
+                                    List<SubtitleGenerator.SubtitleEntry> subtitles) {
+        List<SubtitleGenerator.SubtitleEntry> cues = new ArrayList<>(subtitles);
+        Collections.sort(cues, (a, b) -> Integer.compare(a.getStartMs(), b.getStartMs()));
+        List<Range> runs = new ArrayList<>();
+        int cue = 0;
+        for (int k = 0; k < keyframes.size(); k++) {
+            double start = k == 0 ? 0 : keyframes.get(k);
+            double end = k + 1 < keyframes.size() ? keyframes.get(k + 1) : duration;
+            if (end <= start) continue;
+            while (cue < cues.size() && cues.get(cue).getEndMs() / 1000.0 <= start) {
+                cue++;
+            }
+            boolean burn = false;
+            for (int c = cue; c < cues.size() && cues.get(c).getStartMs() / 1000.0 < end; c++) {
+                if (cues.get(c).getEndMs() / 1000.0 > start) {
+                    burn = true;
+                    break;
+                }
+            }
+            Range last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+            if (last != null && last.burn == burn) {
+                runs.set(runs.size() - 1, new Range(last.start, end, burn));
+            } else {
+                runs.add(new Range(start, end, burn));
+            }
+        }
+        return runs;
+    }
+
+    void concat(List<File> parts, File workDir, File outputFile) throws IOException {
+        File list = new File(workDir, "parts.txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(list), StandardCharsets.UTF_8)) {
+            for (File part : parts) {
+                writer.write("file '" + part.getAbsolutePath() + "'\n");
+            }
+        }
+        String command = String.format("-y -f concat -safe 0 -i %s -i %s -map 0:v:0 -map 1:a? -c copy %s",
+                list.getAbsolutePath(), input(), outputFile.getAbsolutePath());
+        runConcurrently(Collections.singletonList(command), null, 1);
+    }
+
+    /**
+     * Runs the commands with at most {@code maxConcurrent} at a time and waits for all of them;
+     * cancelling the job cancels them all. When given, {@code ranges} holds the source range each
+     * command covers, for progress reporting.
+     */
+    void runConcurrently(List<String> commands, List<Range> ranges, int maxConcurrent) throws IOException {
+        int permits = Math.max(1, maxConcurrent);
+        Semaphore running = new Semaphore(permits);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<FFmpegSession> sessions = new ArrayList<>();
+        job.setCancelAction(this::cancelActiveSessions);
+        try {
+            for (int i = 0; i < commands.size(); i++) {
+                running.acquire();
+                if (job.isCancelled() || failed.get()) {
+                    running.release();
+                    break;
+                }
+                String command = commands.get(i);
+                ExportProgress.Slot slot = progress != null && ranges != null
+                        ? progress.track(ranges.get(i).end - ranges.get(i).start) : null;
+                Log.d(TAG, "Executing FFmpeg command: " + command);
+                FFmpegSession session = FFmpegKit.executeAsync(command, finished -> {
+                    if (!ReturnCode.isSuccess(finished.getReturnCode())) {
+                        // One failed range fails the export, so stop the others right away.
+                        failed.set(true);
+                        cancelActiveSessions();
+                    } else if (slot != null) {
+                        slot.finish();
+                    }
+                    running.release();
+                }, null, slot);
+                sessions.add(session);
+                synchronized (activeSessions) {
+                    activeSessions.add(session);
+                }
+                if (job.isCancelled()) {
+                    cancelActiveSessions();
+                }
+            }
+            // Every started session returns its permit when it ends.
+            running.acquire(permits);
+        } catch (InterruptedException e) {
+            cancelActiveSessions();
+            Thread.currentThread().interrupt();
+            throw new IOException("Burn-in interrupted", e);
+        } finally {
+            job.setCancelAction(null);
+            synchronized (activeSessions) {
+                activeSessions.clear();
+            }
+        }
+        if (job.isCancelled()) {
+            throw new IOException("Process cancelled");
+        }
+        for (FFmpegSession session : sessions) {
+            if (!ReturnCode.isSuccess(session.getReturnCode()) && !ReturnCode.isCancel(session.getReturnCode())) {
+                String errorMessage = session.getOutput() + "\n" + session.getLogsAsString();
+                Log.e(TAG, "FFmpeg error: " + errorMessage);
+                throw new IOException("FFmpeg command failed: " + errorMessage);
+            }
+        }
+    }
+
+    private void cancelActiveSessions() {
+        synchronized (activeSessions) {
+            for (FFmpegSession session : activeSessions) {
+                if (session.getReturnCode() == null) {
+                    FFmpegKit.cancel(session.getSessionId());
+                }
+            }
+        }
+    }
+
+    /** Writes the cues overlapping {@code range} with times relative to its start. */
+    static void writeShiftedSrt(List<SubtitleGenerator.SubtitleEntry> subtitles, Range range, File file)
+            throws IOException {
+        int startMs = (int) Math.round(range.start * 1000);
+        int endMs = (int) Math.round(range.end * 1000);
+        List<SubtitleGenerator.SubtitleEntry> shifted = new ArrayList<>();
+        for (SubtitleGenerator.SubtitleEntry entry : subtitles) {
+            if (entry.getEndMs() <= startMs || entry.getStartMs() >= endMs) {
+                continue;
+            }
+            shifted.add(new SubtitleGenerator.SubtitleEntry(shifted.size() + 1,
+                    Math.max(entry.getStartMs(), startMs) - startMs,
+                    Math.min(entry.getEndMs(), endMs) - startMs,
+                    entry.getText()));
+        }
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            SubtitleWriter.forFormat("srt").write(shifted, null, fos);
+        }
+    }
+
+    /** A fresh SAF parameter, since FFmpegKit closes the descriptor behind one when a session ends. */
+    String input() {
+        return FFmpegKitConfig.getSafParameterForRead(context, videoUri);
+    }
+
+    File createWorkDir() throws IOException {
+        File dir = new File(context.getCacheDir(), "burn_" + System.nanoTime());
+        if (!dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        return dir;
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
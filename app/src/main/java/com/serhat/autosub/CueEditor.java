@@ -0,0 +1,384 @@
+package com.serhat.autosub;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies user edits to a {@link CueList} and keeps an undo/redo history. Each history entry
+ * records the operation and only the cues it touched, never a copy of the list, so the history
+ * costs memory proportional to the edits made and each step runs in O(k log n) for k touched cues.
+ * Cues changed in place keep their identity, which keeps their adapter ids stable across undo.
+ */
+public class CueEditor {
+    private static final int MAX_HISTORY = 200;
+
+    /**
+     * Receives every mutation the editor makes, including those of undo and redo, as list-level
+     * changes, after the list has been changed. Sizes are proportional to the edit, never to the
+     * list. {@link #onEditFinished()} follows the last change of each edit, undo or redo.
+     */
+    public interface ChangeListener {
+        void onCuesRemoved(int from, int count);
+        void onCuesInserted(int index, List<SubtitleGenerator.SubtitleEntry> entries);
+        void onCueChanged(int index, SubtitleGenerator.SubtitleEntry entry);
+        void onEditFinished();
+    }
+
+    private final CueList cues;
+    private final ArrayDeque<Edit> undoStack = new ArrayDeque<>();
+    private final ArrayDeque<Edit> redoStack = new ArrayDeque<>();
+    private final List<ChangeListener> changeListeners = new ArrayList<>();
+
+    public CueEditor(CueList cues) {
+        this.cues = cues;
+    }
+
+    public CueList getCues() {
+        return cues;
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        if (!changeListeners.contains(listener)) {
+            changeListeners.add(listener);
+        }
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    public void editText(int index, String text) {
+        SubtitleGenerator.SubtitleEntry entry = cues.get(index);
+        perform(new TextEdit(index, entry.getText(), text));
+    }
+
+    public void insert(int index, SubtitleGenerator.SubtitleEntry entry) {
+        perform(new InsertEdit(index, entry));
+    }
+
+    public void delete(int index) {
+        deleteAll(Arrays.asList(index));
+    }
+
+    public void deleteAll(Collection<Integer> positions) {
+        if (positions.isEmpty()) {
+            return;
+        }
+        int[] sorted = new int[positions.size()];
+        int i = 0;
+        for (int position : positions) {
+            sorted[i++] = position;
+        }
+        Arrays.sort(sorted);
+        SubtitleGenerator.SubtitleEntry[] removed = new SubtitleGenerator.SubtitleEntry[sorted.length];
+        for (i = 0; i < sorted.length; i++) {
+            removed[i] = cues.get(sorted[i]);
+        }
+        perform(new DeleteEdit(sorted, removed));
+    }
+
+    /** Merges cues {@code from..to} (inclusive) into the first one; returns false for an empty range. */
+    public boolean merge(int from, int to) {
+        if (from < 0 || to >= cues.size() || to <= from) {
+            return false;
+        }
+        SubtitleGenerator.SubtitleEntry first = cues.get(from);
+        List<SubtitleGenerator.SubtitleEntry> tail = new ArrayList<>(cues.subList(from + 1, to + 1));
+        SubtitleGenerator.SubtitleEntry last = tail.get(tail.size() - 1);
+        StringBuilder text = new StringBuilder(first.getText());
+        for (SubtitleGenerator.SubtitleEntry entry : tail) {
+            text.append(' ').append(entry.getText());
+        }
+        CueState after = new CueState(text.toString(), last.getEndMs(), first.getFirstWord(), first.getWordCount());
+        if (first.getFirstWord() >= 0 && last.getFirstWord() >= 0) {
+            after.wordCount = last.getFirstWord() + last.getWordCount() - first.getFirstWord();
+        }
+        perform(new MergeEdit(from, new CueState(first), after, tail));
+        return true;
+    }
+
+    /**
+     * Splits cue {@code index} at {@code textOffset}. The time range is divided in proportion to
+     * the text on each side, and the word range by the number of words before the split.
+     */
+    public boolean split(int index, int textOffset) {
+        SubtitleGenerator.SubtitleEntry entry = cues.get(index);
+        String text = entry.getText();
+        if (textOffset <= 0 || textOffset >= text.length()) {
+            return false;
+        }
+        String head = text.substring(0, textOffset).trim();
+        String tail = text.substring(textOffset).trim();
+        if (head.isEmpty() || tail.isEmpty()) {
+            return false;
+        }
+        int splitMs = entry.getStartMs()
+                + (int) ((long) (entry.getEndMs() - entry.getStartMs()) * textOffset / text.length());
+        CueState after = new CueState(head, splitMs, entry.getFirstWord(), entry.getWordCount());
+        int secondFirstWord = -1;
+        int secondWordCount = 0;
+        if (entry.getFirstWord() >= 0) {
+            int headWords = Math.min(countWords(head), entry.getWordCount());
+            after.wordCount = headWords;
+            secondFirstWord = entry.getFirstWord() + headWords;
+            secondWordCount = entry.getWordCount() - headWords;
+        }
+        SubtitleGenerator.SubtitleEntry second = new SubtitleGenerator.SubtitleEntry(index + 2, splitMs,
+                entry.getEndMs(), tail, secondFirstWord, secondWordCount);
+        perform(new SplitEdit(index, new CueState(entry), after, second));
+        return true;
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    public boolean undo() {
+        Edit edit = undoStack.pollFirst();
+        if (edit == null) {
+            return false;
+        }
+        edit.revert(this);
+        redoStack.push(edit);
+        finishEdit();
+        return true;
+    }
+
+    public boolean redo() {
+        Edit edit = redoStack.pollFirst();
+        if (edit == null) {
+            return false;
+        }
+        edit.apply(this);
+        undoStack.push(edit);
+        finishEdit();
+        return true;
+    }
+
+    private void perform(Edit edit) {
+        edit.apply(this);
+        undoStack.push(edit);
+        if (undoStack.size() > MAX_HISTORY) {
+            undoStack.pollLast();
+        }
+        redoStack.clear();
+        finishEdit();
+    }
+
+    private void finishEdit() {
+        for (ChangeListener listener : changeListeners) {
+            listener.onEditFinished();
+        }
+    }
+
+    private void changeText(int index, String text) {
+        SubtitleGenerator.SubtitleEntry entry = cues.get(index);
+        entry.setText(text);
+        for (ChangeListener listener : changeListeners) {
+            listener.onCueChanged(index, entry);
+        }
+    }
+
+    private void changeCue(int index, CueState state) {
+        SubtitleGenerator.SubtitleEntry entry = cues.get(index);
+        state.applyTo(entry);
+        for (ChangeListener listener : changeListeners) {
+            listener.onCueChanged(index, entry);
+        }
+    }
+
+    private void insertCues(int index, List<SubtitleGenerator.SubtitleEntry> entries) {
+        cues.addAll(index, entries);
+        for (ChangeListener listener : changeListeners) {
+            listener.onCuesInserted(index, entries);
+        }
+    }
+
+    private void removeCues(int from, int count) {
+        cues.subList(from, from + count).clear();
+        for (ChangeListener listener : changeListeners) {
+            listener.onCuesRemoved(from, count);
+        }
+    }
+
+    private static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean whitespace = Character.isWhitespace(text.charAt(i));
+            if (!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+        return words;
+    }
+
+    private abstract static class Edit {
+        abstract void apply(CueEditor editor);
+        abstract void revert(CueEditor editor);
+    }
+
+    /** The mutable fields of a cue that merge and split rewrite. */
+    private static final class CueState {
+        final String text;
+        final int endMs;
+        final int firstWord;
+        int wordCount;
+
+        CueState(String text, int endMs, int firstWord, int wordCount) {
+            this.text = text;
+            this.endMs = endMs;
+            this.firstWord = firstWord;
+            this.wordCount = wordCount;
+        }
+
+        CueState(SubtitleGenerator.SubtitleEntry entry) {
+            this(entry.getText(), entry.getEndMs(), entry.getFirstWord(), entry.getWordCount());
+        }
+
+        void applyTo(SubtitleGenerator.SubtitleEntry entry) {
+            entry.setText(text);
+            entry.setEndMs(endMs);
+            entry.setWordRange(firstWord, wordCount);
+        }
+    }
+
+    private static final class TextEdit extends Edit {
+        private final int index;
+        private final String before;
+        private final String after;
+
+        TextEdit(int index, String before, String after) {
+            this.index = index;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        void apply(CueEditor editor) {
+            editor.changeText(index, after);
+        }
+
+        @Override
+        void revert(CueEditor editor) {
+            editor.changeText(index, before);
+        }
+    }
+
+    private static final class InsertEdit extends Edit {
+        private final int index;
+        private final SubtitleGenerator.SubtitleEntry entry;
+
+        InsertEdit(int index, SubtitleGenerator.SubtitleEntry entry) {
+            this.index = index;
+            this.entry = entry;
+        }
+
+        @Override
+        void apply(CueEditor editor) {
+            editor.insertCues(index, Collections.singletonList(entry));
+        }
+
+        @Override
+        void revert(CueEditor editor) {
+            editor.removeCues(index, 1);
+        }
+    }
+
+    /**
+     * Deletes sorted, distinct positions as runs of adjacent cues, so deleting a block of k cues
+     * is one range removal rather than k.
+     */
+    private static final class DeleteEdit extends Edit {
+        private final int[] runStarts;
+        private final List<List<SubtitleGenerator.SubtitleEntry>> runs = new ArrayList<>();
+
+        DeleteEdit(int[] positions, SubtitleGenerator.SubtitleEntry[] removed) {
+            int[] starts = new int[positions.length];
+            int runCount = 0;
+            for (int i = 0; i < positions.length; i++) {
+                if (i == 0 || positions[i] != positions[i - 1] + 1) {
+                    starts[runCount++] = positions[i];
+                    runs.add(new ArrayList<SubtitleGenerator.SubtitleEntry>());
+                }
+                runs.get(runCount - 1).add(removed[i]);
+            }
+            runStarts = Arrays.copyOf(starts, runCount);
+        }
+
+        @Override
+        void apply(CueEditor editor) {
+            for (int i = runStarts.length - 1; i >= 0; i--) {
+                editor.removeCues(runStarts[i], runs.get(i).size());
+            }
+        }
+
+        @Override
+        void revert(CueEditor editor) {
+            for (int i = 0; i < runStarts.length; i++) {
+                editor.insertCues(runStarts[i], runs.get(i));
+            }
+        }
+    }
+
+    private static final class MergeEdit extends Edit {
+        private final int index;
+        private final CueState before;
+        private final CueState after;
+        private final List<SubtitleGenerator.SubtitleEntry> tail;
+
+        MergeEdit(int index, CueState before, CueState after, List<SubtitleGenerator.SubtitleEntry> tail) {
+            this.index = index;
+            this.before = before;
+            this.after = after;
+            this.tail = tail;
+        }
+
+        @Override
+        void apply(CueEditor editor) {
+            editor.changeCue(index, after);
+            editor.removeCues(index + 1, tail.size());
+        }
+
+        @Override
+        void revert(CueEditor editor) {
+            editor.changeCue(index, before);
+            editor.insertCues(index + 1, tail);
+        }
+    }
+
+    private static final class SplitEdit extends Edit {
+        private final int index;
+        private final CueState before;
+        private final CueState after;
+        private final SubtitleGenerator.SubtitleEntry second;
+
+        SplitEdit(int index, CueState before, CueState after, SubtitleGenerator.SubtitleEntry second) {
+            this.index = index;
+            this.before = before;
+            this.after = after;
+            this.second = second;
+        }
+
+        @Override
+        void apply(CueEditor editor) {
+            editor.changeCue(index, after);
+            editor.insertCues(index + 1, Collections.singletonList(second));
+        }
+
+        @Override
+        void revert(CueEditor editor) {
+            editor.removeCues(index + 1, 1);
+            editor.changeCue(index, before);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.serhat.autosub;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * List of cues backed by an implicit treap: nodes are ordered by position and carry subtree sizes
+ * instead of keys, so positional get, insert, delete and range removal all take O(log n) and a
+ * cue's number is simply its position plus one. Bulk inserts build a balanced subtree in O(k)
+ * before joining it, so appending a batch of recognized cues costs O(k + log n).
+ */
+public class CueList extends AbstractList<SubtitleGenerator.SubtitleEntry> {
+
+    private static final class Node {
+        SubtitleGenerator.SubtitleEntry entry;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(SubtitleGenerator.SubtitleEntry entry, int priority) {
+            this.entry = entry;
+            this.priority = priority;
+        }
+    }
+
+    private final Random random = new Random();
+    private Node root;
+    // Scratch outputs of split(), valid until the next call.
+    private Node splitLeft;
+    private Node splitRight;
+
+    public CueList() {
+    }
+
+    public CueList(Collection<? extends SubtitleGenerator.SubtitleEntry> entries) {
+        addAll(entries);
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public SubtitleGenerator.SubtitleEntry get(int index) {
+        return node(index).entry;
+    }
+
+    @Override
+    public SubtitleGenerator.SubtitleEntry set(int index, SubtitleGenerator.SubtitleEntry entry) {
+        Node node = node(index);
+        SubtitleGenerator.SubtitleEntry old = node.entry;
+        node.entry = entry;
+        return old;
+    }
+
+    @Override
+    public void add(int index, SubtitleGenerator.SubtitleEntry entry) {
+        checkIndex(index, size() + 1);
+        insert(index, new Node(entry, random.nextInt()));
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends SubtitleGenerator.SubtitleEntry> entries) {
+        checkIndex(index, size() + 1);
+        if (entries.isEmpty()) {
+            return false;
+        }
+        insert(index, build(entries));
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends SubtitleGenerator.SubtitleEntry> entries) {
+        return addAll(size(), entries);
+    }
+
+    @Override
+    public SubtitleGenerator.SubtitleEntry remove(int index) {
+        checkIndex(index, size());
+        SubtitleGenerator.SubtitleEntry removed = get(index);
+        removeRange(index, index + 1);
+        return removed;
+    }
+
+    /** Removes {@code [from, to)} with two splits and one merge; also backs {@code subList(..).clear()}. */
+    @Override
+    protected void removeRange(int from, int to) {
+        if (from < 0 || to > size() || from > to) {
+            throw new IndexOutOfBoundsException("from " + from + ", to " + to + ", size " + size());
+        }
+        if (from == to) {
+            return;
+        }
+        split(root, from);
+        Node left = splitLeft;
+        split(splitRight, to - from);
+        root = merge(left, splitRight);
+        modCount++;
+    }
+
+    /**
+     * Returns the index of the last cue starting at or before {@code timeMs}, or -1 if none does.
+     * Cues are kept in start time order, so the position-ordered treap is also a search tree on
+     * start times and this is a single O(log n) descent.
+     */
+    public int floorStart(long timeMs) {
+        int found = -1;
+        int offset = 0;
+        Node node = root;
+        while (node != null) {
+            int index = offset + size(node.left);
+            if (node.entry.getStartMs() <= timeMs) {
+                found = index;
+                offset = index + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    /** In-order traversal with an explicit stack; avoids the O(log n) lookup per element of get(). */
+    @Override
+    public Iterator<SubtitleGenerator.SubtitleEntry> iterator() {
+        return new Iterator<SubtitleGenerator.SubtitleEntry>() {
+            private final ArrayDeque<Node> stack = new ArrayDeque<>();
+            private final int expectedModCount = modCount;
+
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(Node node) {
+                while (node != null) {
+                    stack.push(node);
+                    node = node.left;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public SubtitleGenerator.SubtitleEntry next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = stack.pop();
+                pushLeft(node.right);
+                return node.entry;
+            }
+        };
+    }
+
+    private void insert(int index, Node subtree) {
+        split(root, index);
+        Node right = splitRight;
+        root = merge(merge(splitLeft, subtree), right);
+        modCount++;
+    }
+
+    private Node node(int index) {
+        checkIndex(index, size());
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /** Splits {@code node} into its first {@code count} nodes and the rest. */
+    private void split(Node node, int count) {
+        if (node == null) {
+            splitLeft = null;
+            splitRight = null;
+            return;
+        }
+        if (size(node.left) < count) {
+            split(node.right, count - size(node.left) - 1);
+            node.right = splitLeft;
+            update(node);
+            splitLeft = node;
+        } else {
+            split(node.left, count);
+            node.left = splitRight;
+            update(node);
+            splitRight = node;
+        }
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    /**
+     * Builds a treap from {@code entries} in O(k) using the classic right-spine construction:
+     * each node pops spine nodes of lower priority and adopts them as its left child.
+     */
+    private Node build(Collection<? extends SubtitleGenerator.SubtitleEntry> entries) {
+        ArrayDeque<Node> spine = new ArrayDeque<>();
+        for (SubtitleGenerator.SubtitleEntry entry : entries) {
+            Node node = new Node(entry, random.nextInt());
+            Node last = null;
+            while (!spine.isEmpty() && spine.peek().priority < node.priority) {
+                last = spine.pop();
+                update(last);
+            }
+            node.left = last;
+            if (!spine.isEmpty()) {
+                spine.peek().right = node;
+            }
+            spine.push(node);
+        }
+        Node top = null;
+        while (!spine.isEmpty()) {
+            top = spine.pop();
+            update(top);
+        }
+        return top;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + bound);
+        }
+    }
+}
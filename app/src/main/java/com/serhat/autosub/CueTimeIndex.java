@@ -0,0 +1,50 @@
+package com.serhat.autosub;
+
+/**
+ * Finds the cue under the playhead directly in a {@link CueList}, without a copy of the cue
+ * times. During normal playback the lookup checks the previous hit and the cue after it; after a
+ * seek it falls back to {@link CueList#floorStart}, a binary descent of the list's treap. Edits
+ * and appended batches change the list in place, so the index never has to be updated or rebuilt.
+ */
+public class CueTimeIndex {
+    private CueList cues;
+    private int cursor = 0;
+
+    /** Looks up cues in {@code cues}, which may be null when nothing is shown. */
+    public void setCues(CueList cues) {
+        this.cues = cues;
+        cursor = 0;
+    }
+
+    public void clear() {
+        setCues(null);
+    }
+
+    public int size() {
+        return cues != null ? cues.size() : 0;
+    }
+
+    /** Returns the index of the cue containing {@code positionMs}, or -1 if it falls in a gap. */
+    public int find(long positionMs) {
+        int size = size();
+        if (size == 0) {
+            return -1;
+        }
+        int i = Math.min(cursor, size - 1);
+        if (!isFloor(i, positionMs, size)) {
+            i = i + 1 < size && isFloor(i + 1, positionMs, size) ? i + 1 : cues.floorStart(positionMs);
+        }
+        if (i < 0) {
+            cursor = 0;
+            return -1;
+        }
+        cursor = i;
+        return positionMs < cues.get(i).getEndMs() ? i : -1;
+    }
+
+    /** Whether cue {@code i} is the last one starting at or before {@code positionMs}. */
+    private boolean isFloor(int i, long positionMs, int size) {
+        return cues.get(i).getStartMs() <= positionMs
+                && (i + 1 == size || cues.get(i + 1).getStartMs() > positionMs);
+    }
+}
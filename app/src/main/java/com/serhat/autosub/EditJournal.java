@@ -0,0 +1,457 @@
+package com.serhat.autosub;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only autosave journal of cue edits for one video. The file starts with a base snapshot
+ * of every cue, followed by one small record per change reported by {@link CueEditor}, so an edit
+ * costs bytes proportional to the cues it touched. The records of an edit are handed to the IO
+ * pool once it finishes and written in batches, followed by a commit record; each carries a CRC so
+ * a record torn by a crash is dropped on restore, and an edit without its commit is dropped whole.
+ * Once the records outgrow the snapshot, the journal is compacted into a new snapshot.
+ * Nothing is written until the first edit, and {@link #prune} caps the journals kept across videos.
+ *
+ * <p>Record layout: {@code int length, byte type, payload, int crc32(type + payload)}.
+ */
+public class EditJournal implements CueEditor.ChangeListener {
+    private static final String TAG = "EditJournal";
+    private static final int MAGIC = 0x4153454A; // "ASEJ"
+    private static final int VERSION = 2;
+    private static final String DIRECTORY = "journals";
+
+    private static final byte RECORD_BASE = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final byte RECORD_INSERT = 3;
+    private static final byte RECORD_CHANGE = 4;
+    private static final byte RECORD_COMMIT = 5;
+
+    private static final int MIN_COMPACTION_BYTES = 64 * 1024;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final long MAX_AGE_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final long MAX_TOTAL_BYTES = 32L * 1024 * 1024;
+
+    private final TaskScheduler scheduler;
+    private final String videoUri;
+    private final File file;
+    private final Object fileLock = new Object();
+
+    // Guarded by this: encoded records waiting for the IO pool, and whether a flush is queued.
+    private final List<byte[]> pending = new ArrayList<>();
+    private byte[] pendingBase;
+    private boolean flushScheduled;
+
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private CueList cues;
+    private boolean needsBase;
+    private int editCount;
+    private long baseBytes;
+    private long bytesSinceBase;
+
+    public EditJournal(Context context, Uri videoUri) {
+        this(journalFile(context, videoUri.toString()), videoUri.toString(), App.getTaskScheduler(context));
+    }
+
+    EditJournal(File file, String videoUri, TaskScheduler scheduler) {
+        this.file = file;
+        this.videoUri = videoUri;
+        this.scheduler = scheduler;
+    }
+
+    private static File journalFile(Context context, String videoUri) {
+        File directory = new File(context.getFilesDir(), DIRECTORY);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        return new File(directory, key(videoUri) + ".journal");
+    }
+
+    private static String key(String uri) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(uri.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(uri.hashCode());
+        }
+    }
+
+    /**
+     * Replays the journal into a new list, or returns null if there is none for this video. Reads
+     * stop at the first torn or corrupt record. Call off the main thread.
+     */
+    public CueList restore() {
+        synchronized (fileLock) {
+            if (!file.exists()) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || !videoUri.equals(in.readUTF())) {
+                    return null;
+                }
+                CueList restored = null;
+                List<byte[]> uncommitted = new ArrayList<>();
+                CRC32 crc = new CRC32();
+                while (true) {
+                    byte[] data;
+                    try {
+                        int length = in.readInt();
+                        if (length <= 0 || length > MAX_RECORD_BYTES) {
+                            break;
+                        }
+                        data = new byte[length];
+                        in.readFully(data);
+                        crc.reset();
+                        crc.update(data, 0, length);
+                        if (in.readInt() != (int) crc.getValue()) {
+                            break;
+                        }
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (data[0] == RECORD_COMMIT) {
+                        for (byte[] change : uncommitted) {
+                            restored = apply(restored, new DataInputStream(new ByteArrayInputStream(change)));
+                        }
+                        uncommitted.clear();
+                    } else if (data[0] == RECORD_BASE) {
+                        uncommitted.clear();
+                        restored = apply(restored, new DataInputStream(new ByteArrayInputStream(data)));
+                    } else {
+                        uncommitted.add(data);
+                    }
+                }
+                return restored;
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error restoring edit journal", e);
+                return null;
+            }
+        }
+    }
+
+    private static CueList apply(CueList cues, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type == RECORD_BASE) {
+            int count = in.readInt();
+            List<SubtitleGenerator.SubtitleEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(readEntry(in, i + 1));
+            }
+            return new CueList(entries);
+        }
+        if (cues == null) {
+            throw new IOException("Edit record before base snapshot");
+        }
+        int index = in.readInt();
+        if (type == RECORD_REMOVE) {
+            int count = in.readInt();
+            cues.subList(index, index + count).clear();
+        } else if (type == RECORD_INSERT) {
+            int count = in.readInt();
+            List<SubtitleGenerator.SubtitleEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(readEntry(in, index + i + 1));
+            }
+            cues.addAll(index, entries);
+        } else if (type == RECORD_CHANGE) {
+            SubtitleGenerator.SubtitleEntry changed = readEntry(in, index + 1);
+            SubtitleGenerator.SubtitleEntry entry = cues.get(index);
+            entry.setText(changed.getText());
+            entry.setEndMs(changed.getEndMs());
+            entry.setWordRange(changed.getFirstWord(), changed.getWordCount());
+        } else {
+            throw new IOException("Unknown journal record " + type);
+        }
+        return cues;
+    }
+
+    /**
+     * Starts journaling {@code cues} and records every later change reported to this listener. The
+     * first edit replaces whatever the journal held with a base snapshot, so cues that can simply be
+     * generated again are never written; pass {@code snapshotNow} for ones that cannot, such as
+     * imported cues.
+     */
+    public void start(CueList cues, boolean snapshotNow) {
+        this.cues = cues;
+        needsBase = !snapshotNow;
+        if (snapshotNow) {
+            compact();
+            scheduleFlush();
+        }
+    }
+
+    /** The number of edits recorded since this journal was created. */
+    public int getEditCount() {
+        return editCount;
+    }
+
+    @Override
+    public void onCuesRemoved(int from, int count) {
+        try {
+            beginRecord(RECORD_REMOVE);
+            record.writeInt(from);
+            record.writeInt(count);
+            endRecord();
+        } catch (IOException e) {
+            Log.e(TAG, "Error encoding journal record", e);
+        }
+    }
+
+    @Override
+    public void onCuesInserted(int index, List<SubtitleGenerator.SubtitleEntry> entries) {
+        try {
+            beginRecord(RECORD_INSERT);
+            record.writeInt(index);
+            record.writeInt(entries.size());
+            for (SubtitleGenerator.SubtitleEntry entry : entries) {
+                writeEntry(record, entry);
+            }
+            endRecord();
+        } catch (IOException e) {
+            Log.e(TAG, "Error encoding journal record", e);
+        }
+    }
+
+    @Override
+    public void onCueChanged(int index, SubtitleGenerator.SubtitleEntry entry) {
+        try {
+            beginRecord(RECORD_CHANGE);
+            record.writeInt(index);
+            writeEntry(record, entry);
+            endRecord();
+        } catch (IOException e) {
+            Log.e(TAG, "Error encoding journal record", e);
+        }
+    }
+
+    @Override
+    public void onEditFinished() {
+        editCount++;
+        if (cues != null && (needsBase || bytesSinceBase > Math.max(MIN_COMPACTION_BYTES, baseBytes))) {
+            // The snapshot already includes this edit.
+            needsBase = false;
+            compact();
+        } else {
+            try {
+                beginRecord(RECORD_COMMIT);
+                endRecord();
+            } catch (IOException e) {
+                Log.e(TAG, "Error encoding journal record", e);
+            }
+        }
+        scheduleFlush();
+    }
+
+    private void beginRecord(byte type) throws IOException {
+        recordBytes.reset();
+        record.writeByte(type);
+    }
+
+    private void endRecord() {
+        if (needsBase) {
+            return;
+        }
+        byte[] data = frame(recordBytes);
+        bytesSinceBase += data.length;
+        synchronized (this) {
+            pending.add(data);
+        }
+    }
+
+    /** Queues a fresh base snapshot; records queued before it are dropped since it supersedes them. */
+    private void compact() {
+        try {
+            recordBytes.reset();
+            record.writeByte(RECORD_BASE);
+            record.writeInt(cues.size());
+            for (SubtitleGenerator.SubtitleEntry entry : cues) {
+                writeEntry(record, entry);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error encoding journal snapshot", e);
+            return;
+        }
+        byte[] base = frame(recordBytes);
+        baseBytes = base.length;
+        bytesSinceBase = 0;
+        synchronized (this) {
+            pending.clear();
+            pendingBase = base;
+        }
+    }
+
+    private static byte[] frame(ByteArrayOutputStream payload) {
+        byte[] data = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(data.length + 8);
+        DataOutputStream out = new DataOutputStream(framed);
+        try {
+            out.writeInt(data.length);
+            out.write(data);
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return framed.toByteArray();
+    }
+
+    private void scheduleFlush() {
+        synchronized (this) {
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        scheduler.submit(TaskScheduler.Pool.IO, TaskScheduler.PRIORITY_NORMAL, "journal",
+                job -> flush());
+    }
+
+    /**
+     * Writes everything queued so far: a pending snapshot replaces the file through a temp file
+     * and rename, records are appended in one write and synced once per batch.
+     */
+    public void flush() {
+        synchronized (fileLock) {
+            byte[] base;
+            List<byte[]> records;
+            synchronized (this) {
+                flushScheduled = false;
+                base = pendingBase;
+                pendingBase = null;
+                records = new ArrayList<>(pending);
+                pending.clear();
+            }
+            try {
+                if (base != null) {
+                    writeBase(base);
+                }
+                if (!records.isEmpty()) {
+                    appendRecords(records);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing edit journal", e);
+            }
+        }
+    }
+
+    private void writeBase(byte[] base) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeUTF(videoUri);
+            out.write(base);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private void appendRecords(List<byte[]> records) throws IOException {
+        int total = 0;
+        for (byte[] r : records) {
+            total += r.length;
+        }
+        byte[] batch = new byte[total];
+        int offset = 0;
+        for (byte[] r : records) {
+            System.arraycopy(r, 0, batch, offset, r.length);
+            offset += r.length;
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(batch);
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Deletes the journal, e.g. once its cues were exported or the user discarded them. Later
+     * edits start a new one from a snapshot of the cues at that point.
+     */
+    public void delete() {
+        synchronized (this) {
+            pending.clear();
+            pendingBase = null;
+        }
+        needsBase = true;
+        synchronized (fileLock) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Deletes journals untouched for {@link #MAX_AGE_MS}, then the least recently written ones
+     * until the rest fit in {@link #MAX_TOTAL_BYTES}. Call off the main thread.
+     */
+    public static void prune(Context context) {
+        File[] files = new File(context.getFilesDir(), DIRECTORY).listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            if (total <= MAX_TOTAL_BYTES && now - f.lastModified() <= MAX_AGE_MS) break;
+            total -= f.length();
+            Log.d(TAG, "Pruning " + f.getName());
+            f.delete();
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, SubtitleGenerator.SubtitleEntry entry) throws IOException {
+        out.writeInt(entry.getStartMs());
+        out.writeInt(entry.getEndMs());
+        out.writeInt(entry.getFirstWord());
+        out.writeInt(entry.getWordCount());
+        byte[] text = entry.getText().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(text.length);
+        out.write(text);
+    }
+
+    private static SubtitleGenerator.SubtitleEntry readEntry(DataInputStream in, int number) throws IOException {
+        int startMs = in.readInt();
+        int endMs = in.readInt();
+        int firstWord = in.readInt();
+        int wordCount = in.readInt();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD_BYTES) {
+            throw new IOException("Bad cue text length " + length);
+        }
+        byte[] text = new byte[length];
+        in.readFully(text);
+        return new SubtitleGenerator.SubtitleEntry(number, startMs, endMs,
+                new String(text, StandardCharsets.UTF_8), firstWord, wordCount);
+    }
+}
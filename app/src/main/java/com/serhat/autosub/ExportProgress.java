@@ -0,0 +1,141 @@
+package com.serhat.autosub;
+
+import android.util.Log;
+
+import com.arthenica.ffmpegkit.Statistics;
+import com.arthenica.ffmpegkit.StatisticsCallback;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregates FFmpeg statistics from one or more concurrent sessions of an export into overall
+ * percent complete, encode fps, speed and ETA, and records a summary line per finished export.
+ */
+public class ExportProgress {
+    private static final String TAG = "ExportProgress";
+    private static final long REPORT_INTERVAL_MS = 500;
+
+    public interface Listener {
+        void onProgress(int percent, float fps, double speed, long etaMs);
+    }
+
+    /** Statistics sink for one session, covering {@code workSeconds} of the source. */
+    public class Slot implements StatisticsCallback {
+        private final double workSeconds;
+        private double processedSeconds;
+        private float fps;
+        private double speed;
+        private int frames;
+
+        Slot(double workSeconds) {
+            this.workSeconds = workSeconds;
+        }
+
+        @Override
+        public void apply(Statistics statistics) {
+            synchronized (ExportProgress.this) {
+                processedSeconds = Math.min(workSeconds, statistics.getTime() / 1000.0);
+                fps = statistics.getVideoFps();
+                speed = statistics.getSpeed();
+                frames = statistics.getVideoFrameNumber();
+            }
+            report();
+        }
+
+        public void finish() {
+            synchronized (ExportProgress.this) {
+                processedSeconds = workSeconds;
+                fps = 0;
+                speed = 0;
+            }
+            report();
+        }
+    }
+
+    private final double totalSeconds;
+    private final Listener listener;
+    private final long startTime = System.currentTimeMillis();
+    private final List<Slot> slots = new ArrayList<>();
+    private long lastReportTime = 0;
+    private int lastPercent = -1;
+
+    public ExportProgress(double totalSeconds, Listener listener) {
+        this.totalSeconds = totalSeconds;
+        this.listener = listener;
+    }
+
+    public synchronized Slot track(double workSeconds) {
+        Slot slot = new Slot(workSeconds);
+        slots.add(slot);
+        return slot;
+    }
+
+    /** Drops every session tracked so far, e.g. when a render is abandoned and restarted another way. */
+    public synchronized void reset() {
+        slots.clear();
+        lastPercent = -1;
+    }
+
+    private void report() {
+        int percent;
+        float fps = 0;
+        double speed = 0;
+        long etaMs = -1;
+        synchronized (this) {
+            double processed = 0;
+            for (Slot slot : slots) {
+                processed += slot.processedSeconds;
+                fps += slot.fps;
+                speed += slot.speed;
+            }
+            percent = totalSeconds > 0 ? (int) Math.min(100, processed * 100 / totalSeconds) : 0;
+            long now = System.currentTimeMillis();
+            if (percent == lastPercent && now - lastReportTime < REPORT_INTERVAL_MS) {
+                return;
+            }
+            lastPercent = percent;
+            lastReportTime = now;
+            if (processed > 0 && totalSeconds > processed) {
+                // Wall-clock rate so far covers both encoded and stream-copied ranges.
+                etaMs = (long) ((now - startTime) * (totalSeconds - processed) / processed);
+            } else if (processed >= totalSeconds) {
+                etaMs = 0;
+            }
+        }
+        listener.onProgress(percent, fps, speed, etaMs);
+    }
+
+    /** Appends a JSON line describing the finished export to {@code logFile}. */
+    public void record(File logFile, String mode, File outputFile) {
+        long wallMs = System.currentTimeMillis() - startTime;
+        int frames = 0;
+        synchronized (this) {
+            for (Slot slot : slots) {
+                frames += slot.frames;
+            }
+        }
+        try (OutputStream out = new FileOutputStream(logFile, true)) {
+            JSONObject line = new JSONObject();
+            line.put("time", startTime);
+            line.put("mode", mode);
+            line.put("media_seconds", totalSeconds);
+            line.put("wall_ms", wallMs);
+            line.put("sessions", slots.size());
+            line.put("avg_fps", wallMs > 0 ? frames * 1000.0 / wallMs : 0);
+            line.put("speed", wallMs > 0 ? totalSeconds * 1000 / wallMs : 0);
+            line.put("output_bytes", outputFile.length());
+            out.write((line.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Error recording export stats", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.serhat.autosub;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handle to a job submitted to the {@link TaskScheduler}: exposes its status and progress and lets
+ * callers cancel it or wait for it to finish.
+ */
+public class JobHandle {
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final String name;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Status status = Status.QUEUED;
+    private volatile int progress = 0;
+    private volatile boolean cancelled = false;
+    private volatile Throwable failure;
+    private Runnable cancelAction;
+
+    JobHandle(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public void setProgress(int progress) {
+        this.progress = progress;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public void cancel() {
+        Runnable action;
+        synchronized (this) {
+            if (cancelled || isDone()) {
+                return;
+            }
+            cancelled = true;
+            action = cancelAction;
+        }
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * Sets what {@link #cancel()} does to interrupt the running work, e.g. cancelling an FFmpeg
+     * session. Runs immediately if the job has already been cancelled; pass null to clear it.
+     */
+    public void setCancelAction(Runnable action) {
+        synchronized (this) {
+            cancelAction = action;
+            if (!cancelled || action == null) {
+                return;
+            }
+        }
+        action.run();
+    }
+
+    public void await() throws InterruptedException {
+        done.await();
+    }
+
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    void markRunning() {
+        status = Status.RUNNING;
+    }
+
+    void markFinished(Throwable error) {
+        synchronized (this) {
+            cancelAction = null;
+        }
+        failure = error;
+        if (cancelled) {
+            status = Status.CANCELLED;
+        } else if (error != null) {
+            status = Status.FAILED;
+        } else {
+            progress = 100;
+            status = Status.SUCCEEDED;
+        }
+        done.countDown();
+    }
+}
@@ -20,6 +20,10 @@ class LandingActivity : AppCompatActivity() {
             startActivity(Intent(this, TranslatorActivity::class.java))
         }
 
+        binding.searchTranscriptsBt.setOnClickListener {
+            startActivity(Intent(this, SearchActivity::class.java))
+        }
+
     }
 
 }
@@ -47,19 +47,40 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
 
 public class MainActivity extends AppCompatActivity implements ActionMode.Callback {
 
+    /** Extras for opening a video at a position, e.g. from a transcript search result. */
+    public static final String EXTRA_VIDEO_URI = "video_uri";
+    public static final String EXTRA_LANG_CODE = "lang_code";
+    public static final String EXTRA_SEEK_MS = "seek_ms";
+
     private ActivityMainBinding binding;
     private SubtitleGenerator subtitleGenerator;
     private SubtitleAdapter subtitleAdapter;
-    private List<SubtitleGenerator.SubtitleEntry> subtitleEntries;
+    private CueList subtitleEntries;
+    private CueEditor cueEditor;
+    private final CueTimeIndex cueTimeIndex = new CueTimeIndex();
     private ExoPlayer player;
     private Uri currentVideoUri;
     private ActionMode actionMode;
     private MenuItem select_video_menu;
+    private MenuItem queue_video_menu;
+    private MenuItem import_subtitles_menu;
+    private MenuItem discard_edits_menu;
+    private Uri pendingQueueUri;
+    private MenuItem undo_menu;
+    private MenuItem redo_menu;
+    private JobHandle importJob;
+    private JobHandle restoreJob;
+    /** Bumped whenever the cue list is replaced, so callbacks of an earlier job can be told apart. */
+    private int cueSource;
+    private EditJournal editJournal;
+    private Uri pendingVideoUri;
+    private long pendingSeekMs;
     private boolean preparedOnce;
     private String code;
     ResultLauncher resultLauncher = new ResultLauncher(null,this){
@@ -84,12 +105,13 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
             registerForActivityResult(new ActivityResultContracts.PickVisualMedia(), uri -> {
                 if (uri != null) {
                     Log.d("PhotoPicker", "Selected URI: " + uri);
-                    binding.selectVideoBT.setVisibility(View.GONE);
-                    if (select_video_menu != null) {
-                        select_video_menu.setVisible(true);
+                    try {
+                        // Keep read access so search results can reopen the video later.
+                        getContentResolver().takePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                    } catch (SecurityException e) {
+                        Log.d(TAG, "Could not persist read permission for " + uri);
                     }
-                    currentVideoUri = uri;
-                    generateSubtitles(uri);
+                    onVideoSelected(uri);
                 } else {
                     Log.d("PhotoPicker", "No media selected");
                 }
@@ -99,6 +121,14 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
 
 
 
+    ActivityResultLauncher<String[]> pickSubtitleFile =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) {
+                    Log.d(TAG, "Selected subtitle URI: " + uri);
+                    importSubtitles(uri);
+                }
+            });
+
     private static final long UPDATE_INTERVAL = 100;
     private final Handler handler = new Handler(Looper.getMainLooper());
     private int currentHighlightedPosition = -1;
@@ -223,10 +253,12 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
 
         binding.cancelBT.setOnClickListener(v -> {
             subtitleGenerator.cancelGeneration();
+            subtitleGenerator.cancelExport();
             binding.cancelBT.setVisibility(View.GONE);
             binding.statusTV.setText("Cancelling...");
         });
 
+        openFromIntent(getIntent());
 
     }
 
@@ -235,7 +267,11 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
         binding.selectVideoBT.setVisibility(View.VISIBLE);
         binding.genSubtitleLanguage.setVisibility(View.GONE);
         binding.selectVideoBT.setText("Loading Model...");
+        if (subtitleGenerator != null) {
+            subtitleGenerator.release();
+        }
         subtitleGenerator = new SubtitleGenerator(this);
+        subtitleGenerator.setLiveCaptions(true);
         subtitleGenerator.initModel(new SubtitleGenerator.ModelInitCallback() {
             @Override
             public void onModelInitialized() {
@@ -244,6 +280,11 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
                     public void run() {
                         binding.selectVideoBT.setText("Select Video");
                         binding.selectVideoBT.setEnabled(true);
+                        if (pendingVideoUri != null) {
+                            Uri uri = pendingVideoUri;
+                            pendingVideoUri = null;
+                            onVideoSelected(uri);
+                        }
                     }
                 });
             }
@@ -259,10 +300,174 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
         },code);
     }
 
+    /**
+     * Loads the model for {@link #EXTRA_LANG_CODE} and then opens {@link #EXTRA_VIDEO_URI},
+     * seeking to {@link #EXTRA_SEEK_MS} once the player is prepared.
+     */
+    private void openFromIntent(Intent intent) {
+        String uri = intent.getStringExtra(EXTRA_VIDEO_URI);
+        String langCode = intent.getStringExtra(EXTRA_LANG_CODE);
+        if (uri == null || TextUtils.isEmpty(langCode)) {
+            return;
+        }
+        pendingVideoUri = Uri.parse(uri);
+        pendingSeekMs = intent.getLongExtra(EXTRA_SEEK_MS, 0);
+        code = langCode;
+        loadModel(langCode);
+    }
+
+    private void onVideoSelected(Uri uri) {
+        binding.selectVideoBT.setVisibility(View.GONE);
+        if (select_video_menu != null) {
+            select_video_menu.setVisible(true);
+            queue_video_menu.setVisible(true);
+            import_subtitles_menu.setVisible(true);
+            discard_edits_menu.setVisible(true);
+        }
+        currentVideoUri = uri;
+        openVideo(uri);
+    }
+
+    /**
+     * Restores the cues journaled for {@code videoUri} by an earlier session, or generates them
+     * when there is no journal.
+     */
+    private void openVideo(Uri videoUri) {
+        if (restoreJob != null) {
+            restoreJob.cancel();
+        }
+        EditJournal journal = new EditJournal(this, videoUri);
+        editJournal = journal;
+        nextCueSource();
+        subtitleGenerator.setWordTimeline(null);
+        binding.statusTV.setText("Loading subtitles...");
+        restoreJob = App.getTaskScheduler(this).submit(TaskScheduler.Pool.IO, TaskScheduler.PRIORITY_HIGH,
+                "restore journal", job -> {
+                    CueList restored = journal.restore();
+                    WordTimeline words = restored != null ? subtitleGenerator.findCachedTimeline(videoUri) : null;
+                    runOnUiThread(() -> {
+                        if (job.isCancelled() || editJournal != journal) {
+                            return;
+                        }
+                        if (restored != null && !restored.isEmpty()) {
+                            showRestoredSubtitles(videoUri, restored, words);
+                        } else {
+                            generateSubtitles(videoUri);
+                        }
+                    });
+                });
+    }
+
+    private void showRestoredSubtitles(Uri videoUri, CueList restored, WordTimeline words) {
+        Log.d(TAG, "Restored " + restored.size() + " journaled subtitles for video: " + videoUri);
+        if (!fitsWordRanges(restored, words)) {
+            // The journal does not hold the words, so ranges without their timeline are dropped.
+            for (SubtitleGenerator.SubtitleEntry entry : restored) {
+                entry.setWordRange(-1, 0);
+            }
+            words = null;
+        }
+        subtitleGenerator.setWordTimeline(words);
+        nextCueSource();
+        subtitleEntries = restored;
+        startEditing();
+        startJournal(false);
+        subtitleAdapter.setSubtitles(subtitleEntries);
+        updateUndoMenu();
+        cueTimeIndex.setCues(subtitleEntries);
+        currentHighlightedPosition = -1;
+        currentVideoUri = videoUri;
+        binding.statusTV.setText("Restored " + restored.size() + " subtitles");
+        binding.saveSubtitlesBT.setVisibility(View.VISIBLE);
+        binding.exportVideoBT.setVisibility(View.VISIBLE);
+        binding.playerView.setVisibility(View.VISIBLE);
+        prepareVideo(videoUri);
+        Toast.makeText(this, "Restored your saved edits", Toast.LENGTH_SHORT).show();
+    }
+
+    private static boolean fitsWordRanges(CueList cues, WordTimeline words) {
+        int wordCount = words != null ? words.size() : 0;
+        for (SubtitleGenerator.SubtitleEntry entry : cues) {
+            if (entry.getWordCount() > 0 && entry.getFirstWord() + entry.getWordCount() > wordCount) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Starts editing {@code subtitleEntries}; the list follows every edit as a listener. */
+    private void startEditing() {
+        cueEditor = new CueEditor(subtitleEntries);
+        cueEditor.addChangeListener(subtitleAdapter);
+    }
+
+    /**
+     * Records every later edit to the current cues in the journal. Imported cues are snapshotted
+     * right away since they cannot be generated again.
+     */
+    private void startJournal(boolean snapshotNow) {
+        if (editJournal == null) {
+            return;
+        }
+        editJournal.start(subtitleEntries, snapshotNow);
+        cueEditor.addChangeListener(editJournal);
+    }
+
+    /**
+     * Returns an action that deletes the current journal once the cues have been exported, as the
+     * output then holds the edits. Edits made while exporting keep the journal.
+     */
+    private Runnable journalDeleter() {
+        EditJournal journal = editJournal;
+        int edits = journal != null ? journal.getEditCount() : 0;
+        return () -> {
+            if (journal != null && journal == editJournal && journal.getEditCount() == edits) {
+                journal.delete();
+            }
+        };
+    }
+
+    /** Deletes the saved edits of the current video and generates its subtitles again. */
+    private void discardEdits() {
+        if (currentVideoUri == null || editJournal == null) {
+            return;
+        }
+        editJournal.delete();
+        generateSubtitles(currentVideoUri);
+    }
+
+    /** Starts a new cue source, which also hides the live caption of the one it replaces. */
+    private int nextCueSource() {
+        showLiveCaption("");
+        return ++cueSource;
+    }
+
+    /**
+     * Returns true if a batch starting at {@code fromIndex} comes from the job that filled the current
+     * cue list and continues it. Batches a cancelled or replaced job posted before it stopped fail
+     * this check and are dropped.
+     */
+    private boolean isNextBatch(int source, int fromIndex) {
+        return source == cueSource && subtitleEntries != null && fromIndex == subtitleEntries.size();
+    }
+
+    /**
+     * Shows the recognizer's in-progress hypothesis in its own line, which playback never writes
+     * to, so it stays visible while the video plays. An empty caption hides it.
+     */
+    private void showLiveCaption(String text) {
+        binding.liveCaptionTV.setText(text);
+        binding.liveCaptionTV.setVisibility(text.isEmpty() ? View.GONE : View.VISIBLE);
+    }
+
     private void generateSubtitles(Uri videoUri) {
-        subtitleEntries = new ArrayList<>();
+        int source = nextCueSource();
+        subtitleEntries = new CueList();
+        startEditing();
         subtitleAdapter.setSubtitles(subtitleEntries);
-        subtitleAdapter.notifyDataSetChanged();
+        updateUndoMenu();
+        cueTimeIndex.setCues(subtitleEntries);
+        currentHighlightedPosition = -1;
 
         binding.progressBar.setVisibility(View.VISIBLE);
         binding.progressBar.setIndeterminate(false);
@@ -279,10 +484,12 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
 
         subtitleGenerator.generateSubtitles(videoUri, new SubtitleGenerator.SubtitleGenerationCallback() {
             @Override
-            public void onPartialSubtitlesGenerated(List<SubtitleGenerator.SubtitleEntry> partialSubtitles) {
+            public void onSubtitlesAppended(int fromIndex, List<SubtitleGenerator.SubtitleEntry> appended) {
                 runOnUiThread(() -> {
-                    subtitleEntries = partialSubtitles;
-                    //subtitleAdapter.setSubtitles(partialSubtitles);
+                    if (!isNextBatch(source, fromIndex)) {
+                        return;
+                    }
+                    subtitleAdapter.appendSubtitles(appended);
                     binding.progressBar.setVisibility(View.GONE);
                     binding.progressPercentageTV.setVisibility(View.GONE);
                     binding.cancelBT.setVisibility(View.GONE);
@@ -308,6 +515,11 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
             public void onSubtitlesGenerated(List<SubtitleGenerator.SubtitleEntry> entries) {
                 Log.d(TAG, "Subtitles generated successfully. Total entries: " + entries.size());
                 runOnUiThread(() -> {
+                    if (source != cueSource) {
+                        return;
+                    }
+                    showLiveCaption("");
+                    startJournal(false);
                     binding.exportVideoBT.setVisibility(View.VISIBLE);
                     /*binding.progressBar.setVisibility(View.GONE);
                     binding.progressPercentageTV.setVisibility(View.GONE);
@@ -329,6 +541,9 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
             public void onError(String errorMessage) {
                 Log.e(TAG, "Error generating subtitles: " + errorMessage);
                 runOnUiThread(() -> {
+                    if (source == cueSource) {
+                        showLiveCaption("");
+                    }
                     binding.progressBar.setVisibility(View.GONE);
                     binding.progressPercentageTV.setVisibility(View.GONE);
                     binding.cancelBT.setVisibility(View.GONE);
@@ -345,10 +560,27 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
                 });
             }
 
+            @Override
+            public void onLiveCaption(String text) {
+                runOnUiThread(() -> {
+                    if (source == cueSource) {
+                        showLiveCaption(text);
+                    }
+                });
+            }
+
+            @Override
+            public void onSilenceSkipped(long skippedMs, long totalMs) {
+                Log.d(TAG, "Skipped " + skippedMs + " ms of non-speech audio out of " + totalMs + " ms");
+            }
+
             @Override
             public void onCancelled() {
                 Log.d(TAG, "Subtitle generation cancelled");
                 runOnUiThread(() -> {
+                    if (source == cueSource) {
+                        showLiveCaption("");
+                    }
                     binding.progressBar.setVisibility(View.GONE);
                     binding.progressPercentageTV.setVisibility(View.GONE);
                     binding.cancelBT.setVisibility(View.GONE);
@@ -364,21 +596,19 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
             MediaItem mediaItem = MediaItem.fromUri(videoUri);
             player.setMediaItem(mediaItem);
             player.prepare();
+            if (pendingSeekMs > 0) {
+                player.seekTo(pendingSeekMs);
+                pendingSeekMs = 0;
+            }
             player.play();
         }
     }
 
     private void updateHighlightedSubtitle(long positionMs) {
-        int newHighlightedPosition = -1;
-        for (int i = 0; i < subtitleEntries.size(); i++) {
-            SubtitleGenerator.SubtitleEntry entry = subtitleEntries.get(i);
-            long startTime = parseTime(entry.getStartTime());
-            long endTime = parseTime(entry.getEndTime());
-            if (positionMs >= startTime && positionMs < endTime) {
-                newHighlightedPosition = i;
-                break;
-            }
+        if (subtitleEntries == null) {
+            return;
         }
+        int newHighlightedPosition = cueTimeIndex.find(positionMs);
 
         if (newHighlightedPosition != currentHighlightedPosition) {
             currentHighlightedPosition = newHighlightedPosition;
@@ -395,14 +625,6 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
         }
     }
 
-    private long parseTime(String timeString) {
-        String[] parts = timeString.split("[:,]");
-        return Long.parseLong(parts[0]) * 3600000L +
-                Long.parseLong(parts[1]) * 60000L +
-                Long.parseLong(parts[2]) * 1000L +
-                Long.parseLong(parts[3]);
-    }
-
     private void saveSubtitles() {
         if (subtitleEntries == null || subtitleEntries.isEmpty()) {
             Toast.makeText(this, "No subtitles to save", Toast.LENGTH_SHORT).show();
@@ -411,10 +633,8 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
 
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Choose subtitle format")
-                .setItems(new CharSequence[]{"SRT", "VTT"}, (dialog, which) -> {
-                    String format = (which == 0) ? "srt" : "vtt";
-                    saveSubtitlesInFormat(format);
-                });
+                .setItems(new CharSequence[]{"SRT", "VTT", "ASS", "TTML", "JSON (word timings)"},
+                        (dialog, which) -> saveSubtitlesInFormat(SubtitleWriter.FORMATS[which]));
         builder.create().show();
     }
 
@@ -429,10 +649,12 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
 
         List<SubtitleGenerator.SubtitleEntry> updatedSubtitles = subtitleAdapter.getSubtitles();
 
+        Runnable deleteJournal = journalDeleter();
         subtitleGenerator.saveSubtitlesToFile(updatedSubtitles, format, currentVideoUri, new SubtitleGenerator.SubtitleSaveCallback() {
             @Override
             public void onSubtitlesSaved(String filePath) {
                 runOnUiThread(() -> {
+                    deleteJournal.run();
                     binding.progressBar.setVisibility(View.GONE);
                     binding.statusTV.setText(format.toUpperCase() + " subtitles saved: " + filePath);
                     Toast.makeText(MainActivity.this, "Subtitles saved successfully", Toast.LENGTH_SHORT).show();
@@ -495,6 +717,20 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
         select_video_menu = menu.findItem(R.id.select_video_menu);
+        queue_video_menu = menu.findItem(R.id.queue_video_menu);
+        import_subtitles_menu = menu.findItem(R.id.import_subtitles_menu);
+        discard_edits_menu = menu.findItem(R.id.discard_edits_menu);
+        undo_menu = menu.findItem(R.id.undo_menu);
+        redo_menu = menu.findItem(R.id.redo_menu);
+        menu.findItem(R.id.parallel_recognition_menu)
+                .setChecked(SubtitleGenerator.isParallelRecognitionEnabled(this));
+        if (currentVideoUri != null) {
+            select_video_menu.setVisible(true);
+            queue_video_menu.setVisible(true);
+            import_subtitles_menu.setVisible(true);
+            discard_edits_menu.setVisible(true);
+        }
+        updateUndoMenu();
         return super.onCreateOptionsMenu(menu);
     }
 
@@ -503,6 +739,28 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
         int id = item.getItemId();
         if (id == R.id.select_video_menu) {
             selectVideo();
+        } else if (id == R.id.queue_video_menu) {
+            queueCurrentVideo();
+        } else if (id == R.id.undo_menu) {
+            if (cueEditor != null && cueEditor.undo()) {
+                onCuesEdited();
+            }
+        } else if (id == R.id.redo_menu) {
+            if (cueEditor != null && cueEditor.redo()) {
+                onCuesEdited();
+            }
+        } else if (id == R.id.import_subtitles_menu) {
+            pickSubtitleFile.launch(new String[]{"application/x-subrip", "text/vtt", "text/x-ssa",
+                    "text/plain", "application/octet-stream"});
+        } else if (id == R.id.discard_edits_menu) {
+            discardEdits();
+        } else if (id == R.id.parallel_recognition_menu) {
+            boolean enabled = !item.isChecked();
+            item.setChecked(enabled);
+            SubtitleGenerator.setParallelRecognitionEnabled(this, enabled);
+            if (subtitleGenerator != null) {
+                subtitleGenerator.setParallelRecognition(enabled);
+            }
         } else if (id == R.id.open_project_menu) {
             Intent intent = new Intent(Intent.ACTION_VIEW);
             intent.setData(Uri.parse("https://github.com/Serkali-sudo/auto-subtitle-generator"));
@@ -511,6 +769,134 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
         return super.onOptionsItemSelected(item);
     }
 
+    private void queueCurrentVideo() {
+        if (currentVideoUri == null || TextUtils.isEmpty(code)) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ActivityCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            // Queue once the user has answered, so the service's first notification can be shown.
+            pendingQueueUri = currentVideoUri;
+            notificationPermissionLauncher.launch(Manifest.permission.POST_NOTIFICATIONS);
+            return;
+        }
+        enqueueVideo(currentVideoUri);
+    }
+
+    private final ActivityResultLauncher<String> notificationPermissionLauncher = registerForActivityResult(
+            new ActivityResultContracts.RequestPermission(), granted -> {
+                Uri uri = pendingQueueUri;
+                pendingQueueUri = null;
+                if (uri == null) {
+                    return;
+                }
+                if (!granted) {
+                    Toast.makeText(this, "Background progress will not be shown without notification permission",
+                            Toast.LENGTH_LONG).show();
+                }
+                enqueueVideo(uri);
+            });
+
+    private void enqueueVideo(Uri videoUri) {
+        if (videoUri.equals(currentVideoUri)) {
+            subtitleGenerator.cancelGeneration();
+        }
+        TranscriptionService.enqueue(this, videoUri, code);
+        Toast.makeText(this, "Video added to the background queue", Toast.LENGTH_SHORT).show();
+    }
+
+    private void importSubtitles(Uri subtitleUri) {
+        if (currentVideoUri == null) {
+            return;
+        }
+        if (subtitleGenerator != null) {
+            subtitleGenerator.cancelGeneration();
+            subtitleGenerator.setWordTimeline(null);
+        }
+        if (importJob != null) {
+            importJob.cancel();
+        }
+        int source = nextCueSource();
+        subtitleEntries = new CueList();
+        startEditing();
+        subtitleAdapter.setSubtitles(subtitleEntries);
+        updateUndoMenu();
+        cueTimeIndex.setCues(subtitleEntries);
+        currentHighlightedPosition = -1;
+        binding.progressBar.setVisibility(View.VISIBLE);
+        binding.progressBar.setIndeterminate(true);
+        binding.statusTV.setText("Importing subtitles...");
+
+        importJob = SubtitleReader.importAsync(this, subtitleUri, new SubtitleReader.ImportCallback() {
+            @Override
+            public void onWordsImported(WordTimeline words) {
+                runOnUiThread(() -> {
+                    if (subtitleGenerator != null && source == cueSource) {
+                        subtitleGenerator.setWordTimeline(words);
+                    }
+                });
+            }
+
+            @Override
+            public void onSubtitlesAppended(int fromIndex, List<SubtitleGenerator.SubtitleEntry> appended) {
+                runOnUiThread(() -> {
+                    if (!isNextBatch(source, fromIndex)) {
+                        return;
+                    }
+                    subtitleAdapter.appendSubtitles(appended);
+                    binding.statusTV.setText("Importing subtitles... " + subtitleEntries.size());
+                });
+            }
+
+            @Override
+            public void onSubtitlesImported(int count) {
+                runOnUiThread(() -> {
+                    if (source != cueSource) {
+                        return;
+                    }
+                    binding.progressBar.setVisibility(View.GONE);
+                    binding.progressBar.setIndeterminate(false);
+                    binding.statusTV.setText("Imported " + count + " subtitles");
+                    startJournal(true);
+                    binding.saveSubtitlesBT.setVisibility(View.VISIBLE);
+                    binding.exportVideoBT.setVisibility(View.VISIBLE);
+                    binding.playerView.setVisibility(View.VISIBLE);
+                    prepareVideo(currentVideoUri);
+                });
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                runOnUiThread(() -> {
+                    binding.progressBar.setVisibility(View.GONE);
+                    binding.progressBar.setIndeterminate(false);
+                    binding.statusTV.setText("Error importing subtitles: " + errorMessage);
+                });
+            }
+        });
+    }
+
+    /**
+     * Updates the undo menu after the editor changed the cues; the list has already applied the
+     * change as a listener, and the playback index reads the cues directly.
+     */
+    private void onCuesEdited() {
+        currentHighlightedPosition = -1;
+        updateUndoMenu();
+    }
+
+    private void updateUndoMenu() {
+        if (undo_menu == null) {
+            return;
+        }
+        boolean editing = cueEditor != null;
+        undo_menu.setVisible(editing);
+        redo_menu.setVisible(editing);
+        undo_menu.setEnabled(editing && cueEditor.canUndo());
+        redo_menu.setEnabled(editing && cueEditor.canRedo());
+    }
+
     private void startSubtitleHighlightUpdate() {
         handler.removeCallbacks(updateHighlightRunnable);
         handler.post(updateHighlightRunnable);
@@ -523,8 +909,16 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
     @Override
     protected void onDestroy() {
         stopSubtitleHighlightUpdate();
+        if (importJob != null) {
+            importJob.cancel();
+        }
+        if (restoreJob != null) {
+            restoreJob.cancel();
+        }
         if (subtitleGenerator != null) {
             subtitleGenerator.cancelGeneration();
+            subtitleGenerator.cancelExport();
+            subtitleGenerator.release();
         }
         player.release();
         super.onDestroy();
@@ -540,7 +934,19 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
 
         builder.setPositiveButton("Save", (dialog, which) -> {
             String newText = input.getText().toString();
-            subtitleAdapter.updateSubtitle(position, newText);
+            if (!newText.equals(entry.getText())) {
+                cueEditor.editText(position, newText);
+                onCuesEdited();
+            }
+        });
+        builder.setNeutralButton("Split at Cursor", (dialog, which) -> {
+            if (!input.getText().toString().equals(entry.getText())) {
+                cueEditor.editText(position, input.getText().toString());
+            }
+            if (!cueEditor.split(position, input.getSelectionStart())) {
+                Toast.makeText(this, "Place the cursor inside the text to split", Toast.LENGTH_SHORT).show();
+            }
+            onCuesEdited();
         });
         builder.setNegativeButton("Cancel", (dialog, which) -> dialog.cancel());
 
@@ -577,16 +983,22 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
 
     private void startExport(boolean burnSubtitles, String fontName) {
         binding.progressBar.setVisibility(View.VISIBLE);
-        binding.progressBar.setIndeterminate(true);
-        binding.statusTV.setText("Exporting video with " + (burnSubtitles ? "hard" : "soft") + " subtitles...");
+        binding.progressBar.setIndeterminate(false);
+        binding.progressBar.setProgress(0);
+        String exportStatus = "Exporting video with " + (burnSubtitles ? "hard" : "soft") + " subtitles...";
+        binding.statusTV.setText(exportStatus);
+        binding.cancelBT.setVisibility(View.VISIBLE);
 
         List<SubtitleGenerator.SubtitleEntry> updatedSubtitles = subtitleAdapter.getSubtitles();
 
-        subtitleGenerator.exportVideoWithSubtitles(currentVideoUri, updatedSubtitles, burnSubtitles, fontName, new SubtitleGenerator.VideoExportCallback() {
+        Runnable deleteJournal = journalDeleter();
+        SubtitleGenerator.VideoExportCallback exportCallback = new SubtitleGenerator.VideoExportCallback() {
             @Override
             public void onVideoExported(String filePath) {
                 runOnUiThread(() -> {
+                    deleteJournal.run();
                     binding.progressBar.setVisibility(View.GONE);
+                    binding.cancelBT.setVisibility(View.GONE);
                     binding.statusTV.setText("Video exported: " + filePath);
                     Toast.makeText(MainActivity.this, "Video exported successfully", Toast.LENGTH_LONG).show();
                 });
@@ -596,6 +1008,7 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
             public void onError(String errorMessage) {
                 runOnUiThread(() -> {
                     binding.progressBar.setVisibility(View.GONE);
+                    binding.cancelBT.setVisibility(View.GONE);
                     binding.statusTV.setText("Error exporting video: " + errorMessage);
                     Toast.makeText(MainActivity.this, "Error exporting video", Toast.LENGTH_SHORT).show();
                 });
@@ -607,7 +1020,36 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
                     binding.progressBar.setProgress(progress);
                 });
             }
-        });
+
+            @Override
+            public void onExportStats(float fps, double speed, long etaMs) {
+                String stats = String.format(Locale.US, "%s\n%.0f fps, %.1fx", exportStatus, fps, speed);
+                if (etaMs >= 0) {
+                    long etaSeconds = etaMs / 1000;
+                    stats += String.format(Locale.US, ", ETA %d:%02d", etaSeconds / 60, etaSeconds % 60);
+                }
+                String text = stats;
+                runOnUiThread(() -> binding.statusTV.setText(text));
+            }
+
+            @Override
+            public void onCancelled() {
+                runOnUiThread(() -> {
+                    binding.progressBar.setVisibility(View.GONE);
+                    binding.cancelBT.setVisibility(View.GONE);
+                    binding.statusTV.setText("Video export cancelled");
+                });
+            }
+        };
+
+        if (burnSubtitles) {
+            subtitleGenerator.exportVideoWithSubtitles(currentVideoUri, updatedSubtitles, true, fontName, exportCallback);
+        } else {
+            // Tag the track with the language it was recognized in rather than always English.
+            subtitleGenerator.exportSoftSubtitleTracks(currentVideoUri,
+                    Collections.singletonList(new SubtitleGenerator.SubtitleTrack(updatedSubtitles, code, null)),
+                    null, exportCallback);
+        }
     }
 
     private void seekToTime(long timeMs) {
@@ -622,12 +1064,8 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
                 .setTitle("Delete Subtitle")
                 .setMessage("Are you sure you want to delete this subtitle?")
                 .setPositiveButton("Yes", (dialog, which) -> {
-                    subtitleAdapter.deleteSubtitle(position);
-                    List<SubtitleGenerator.SubtitleEntry> updatedSubtitles = subtitleAdapter.getSubtitles();
-                    for (int i = position; i < updatedSubtitles.size(); i++) {
-                        updatedSubtitles.get(i).setNumber(i + 1);
-                    }
-                    subtitleAdapter.notifyItemRangeChanged(position, updatedSubtitles.size() - position);
+                    cueEditor.delete(position);
+                    onCuesEdited();
                 })
                 .setNegativeButton("No", null)
                 .show();
@@ -688,39 +1126,12 @@ public class MainActivity extends AppCompatActivity implements ActionMode.Callba
         int startPosition = sortedPositions.get(0);
         int endPosition = sortedPositions.get(sortedPositions.size() - 1);
 
-        SubtitleGenerator.SubtitleEntry mergedEntry = subtitleAdapter.getSubtitles().get(startPosition);
-        StringBuilder mergedText = new StringBuilder(mergedEntry.getText());
-
-        for (int i = startPosition + 1; i <= endPosition; i++) {
-            SubtitleGenerator.SubtitleEntry entry = subtitleAdapter.getSubtitles().get(i);
-            mergedText.append(" ").append(entry.getText());
-        }
-
-        mergedEntry.setText(mergedText.toString());
-        mergedEntry.setEndTime(subtitleAdapter.getSubtitles().get(endPosition).getEndTime());
-
-        for (int i = endPosition; i > startPosition; i--) {
-            subtitleAdapter.deleteSubtitle(i);
-        }
-
-        subtitleAdapter.notifyDataSetChanged();
-
-        List<SubtitleGenerator.SubtitleEntry> updatedSubtitles = subtitleAdapter.getSubtitles();
-        for (int i = startPosition; i < updatedSubtitles.size(); i++) {
-            updatedSubtitles.get(i).setNumber(i + 1);
-        }
-        subtitleAdapter.notifyItemRangeChanged(startPosition, updatedSubtitles.size() - startPosition);
+        cueEditor.merge(startPosition, endPosition);
+        onCuesEdited();
     }
 
     private void deleteSelectedSubtitles() {
-        Set<Integer> selectedPositions = subtitleAdapter.getSelectedPositions();
-        List<Integer> sortedPositions = new ArrayList<>(selectedPositions);
-        Collections.sort(sortedPositions, Collections.reverseOrder());
-
-        for (int position : sortedPositions) {
-            subtitleAdapter.deleteSubtitle(position);
-        }
-
-        subtitleAdapter.notifyDataSetChanged();
+        cueEditor.deleteAll(subtitleAdapter.getSelectedPositions());
+        onCuesEdited();
     }
 }
\ No newline at end of file
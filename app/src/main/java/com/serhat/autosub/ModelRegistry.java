@@ -0,0 +1,179 @@
+package com.serhat.autosub;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.vosk.Model;
+import org.vosk.android.StorageService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide owner of the Vosk models. Each language's model is unpacked and loaded once and
+ * then shared by every {@link SubtitleGenerator}; idle models are released when the system asks
+ * the app to trim memory.
+ */
+public class ModelRegistry {
+    private static final String TAG = "ModelRegistry";
+    private static final String PREFS = "model_registry";
+    private static final String KEY_LAST_LANGUAGE = "last_language";
+
+    public interface Callback {
+        void onModelReady(Model model, String modelName);
+        void onError(String errorMessage);
+    }
+
+    private static class Entry {
+        Model model;
+        int users;
+        boolean loading;
+        final List<Callback> waiting = new ArrayList<>();
+    }
+
+    private final Context context;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    public ModelRegistry(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static String modelNameFor(String languageCode) {
+        if ("hi".equals(languageCode)) {
+            return "model-hi-in";
+        }
+        return "model-en-us";
+    }
+
+    /**
+     * Hands out the shared model for {@code languageCode}, loading it first if needed. Every
+     * successful acquire must be balanced by {@link #release(String)}.
+     */
+    public void acquire(String languageCode, Callback callback) {
+        String modelName = modelNameFor(languageCode);
+        rememberLastLanguage(languageCode);
+        Model ready = null;
+        boolean startLoad = false;
+        synchronized (this) {
+            Entry entry = entries.get(modelName);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(modelName, entry);
+            }
+            if (entry.model != null) {
+                entry.users++;
+                ready = entry.model;
+            } else {
+                entry.waiting.add(callback);
+                startLoad = !entry.loading;
+                entry.loading = true;
+            }
+        }
+        if (ready != null) {
+            callback.onModelReady(ready, modelName);
+        } else if (startLoad) {
+            load(modelName);
+        }
+    }
+
+    /** Adds a user to a model that is already held, e.g. for a job that may outlive its owner. */
+    public synchronized void retain(String modelName) {
+        Entry entry = entries.get(modelName);
+        if (entry != null && entry.model != null) {
+            entry.users++;
+        }
+    }
+
+    public synchronized void release(String modelName) {
+        Entry entry = entries.get(modelName);
+        if (entry != null && entry.users > 0) {
+            entry.users--;
+        }
+    }
+
+    public void preloadLastUsed() {
+        String languageCode = prefs().getString(KEY_LAST_LANGUAGE, null);
+        if (languageCode == null) {
+            return;
+        }
+        String modelName = modelNameFor(languageCode);
+        synchronized (this) {
+            if (entries.containsKey(modelName)) {
+                return;
+            }
+            Entry entry = new Entry();
+            entry.loading = true;
+            entries.put(modelName, entry);
+        }
+        Log.d(TAG, "Preloading " + modelName);
+        load(modelName);
+    }
+
+    private void load(String modelName) {
+        StorageService.unpack(context, modelName, modelName,
+                (model) -> {
+                    List<Callback> waiting;
+                    synchronized (this) {
+                        Entry entry = entries.get(modelName);
+                        if (entry == null) {
+                            entry = new Entry();
+                            entries.put(modelName, entry);
+                        }
+                        entry.model = model;
+                        entry.loading = false;
+                        entry.users += entry.waiting.size();
+                        waiting = new ArrayList<>(entry.waiting);
+                        entry.waiting.clear();
+                    }
+                    Log.d(TAG, "Model " + modelName + " loaded");
+                    for (Callback callback : waiting) {
+                        callback.onModelReady(model, modelName);
+                    }
+                },
+                (exception) -> {
+                    List<Callback> waiting;
+                    synchronized (this) {
+                        Entry entry = entries.remove(modelName);
+                        waiting = entry != null ? new ArrayList<>(entry.waiting) : new ArrayList<>();
+                    }
+                    Log.e(TAG, "Failed to unpack the model: " + exception.getMessage());
+                    for (Callback callback : waiting) {
+                        callback.onError(exception.getMessage());
+                    }
+                });
+    }
+
+    public void onTrimMemory(int level) {
+        // UI_HIDDEN alone only means the user left the app; keep the model so coming back is instant.
+        boolean runningLow = level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+        if (!runningLow && level < ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return;
+        }
+        synchronized (this) {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> e = it.next();
+                Entry entry = e.getValue();
+                if (entry.model != null && entry.users == 0) {
+                    Log.d(TAG, "Releasing idle model " + e.getKey() + " (trim level " + level + ")");
+                    entry.model.close();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private void rememberLastLanguage(String languageCode) {
+        prefs().edit().putString(KEY_LAST_LANGUAGE, languageCode).apply();
+    }
+
+    private SharedPreferences prefs() {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
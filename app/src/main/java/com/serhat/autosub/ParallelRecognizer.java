@@ -0,0 +1,235 @@
+package com.serhat.autosub;
+
+import android.util.Log;
+
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Splits a 16 kHz mono PCM file into overlapping windows and recognizes them concurrently on the
+ * {@link TaskScheduler.Pool#CPU} pool, each window on its own {@link Recognizer} built from the
+ * shared {@link Model}. Every window owns a core range and keeps the words whose midpoint falls
+ * inside it, widened by a small slack so a word whose timestamps differ slightly between two
+ * windows is never dropped by both. Because both windows may then keep it, each chunk's leading
+ * words are deduplicated against the end of the last word kept before the seam.
+ */
+public class ParallelRecognizer {
+    private static final String TAG = "ParallelRecognizer";
+    private static final int BYTES_PER_SECOND = 16000 * 2;
+    private static final int BUFFER_SIZE = 4096;
+    private static final int SEAM_SLACK_MS = 500;
+
+    public interface Listener {
+        boolean isCancelled();
+        void onProgress(long processedBytes, long totalBytes);
+        /**
+         * Called on the thread running {@link #recognize} with each chunk's words, in timeline order.
+         * Recognition can restart from {@code coreEndMs} without losing any of them.
+         */
+        void onChunkRecognized(WordTimeline chunk, int coreEndMs);
+    }
+
+    private final Model model;
+    private final TaskScheduler scheduler;
+    private final long windowBytes;
+    private final long overlapBytes;
+    private final boolean skipSilence;
+
+    public ParallelRecognizer(Model model, TaskScheduler scheduler, int windowSeconds, int overlapSeconds,
+                              boolean skipSilence) {
+        this.model = model;
+        this.scheduler = scheduler;
+        this.windowBytes = (long) windowSeconds * BYTES_PER_SECOND;
+        this.overlapBytes = (long) overlapSeconds * BYTES_PER_SECOND;
+        this.skipSilence = skipSilence;
+    }
+
+    /**
+     * Recognizes {@code dataLength} bytes of PCM starting at {@code dataOffset} in {@code pcmFile},
+     * skipping the first {@code resumeMs} of it. Leading words that end before {@code keptEndMs},
+     * the end of the last word already transcribed, are dropped. Blocks until every chunk has been
+     * reported to the listener.
+     */
+    public void recognize(File pcmFile, long dataOffset, long dataLength, int resumeMs, int keptEndMs,
+                          Listener listener) throws IOException {
+        long startBytes = Math.min(dataLength, (long) resumeMs * BYTES_PER_SECOND / 1000 / 2 * 2);
+        AtomicLong processedBytes = new AtomicLong(startBytes);
+        List<JobHandle> jobs = new ArrayList<>();
+        List<Long> coreEnds = new ArrayList<>();
+
+        RandomAccessFile raf = new RandomAccessFile(pcmFile, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            int chunkCount = (int) ((dataLength - startBytes + windowBytes - 1) / windowBytes);
+            WordTimeline[] results = new WordTimeline[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long coreStart = startBytes + i * windowBytes;
+                long coreEnd = Math.min(dataLength, coreStart + windowBytes);
+                long readStart = Math.max(0, coreStart - overlapBytes);
+                long readEnd = Math.min(dataLength, coreEnd + overlapBytes);
+                final int index = i;
+                coreEnds.add(coreEnd);
+                jobs.add(scheduler.submit(TaskScheduler.Pool.CPU, TaskScheduler.PRIORITY_NORMAL, "recognize-chunk",
+                        job -> {
+                    if (job.isCancelled() || listener.isCancelled()) {
+                        return;
+                    }
+                    results[index] = recognizeChunk(channel, dataOffset, readStart, readEnd, coreStart, coreEnd,
+                            dataLength, job, listener, processedBytes);
+                }));
+            }
+            Log.d(TAG, "Recognizing " + chunkCount + " chunks from " + resumeMs + " ms");
+
+            int lastEndMs = keptEndMs;
+            for (int i = 0; i < chunkCount; i++) {
+                JobHandle job = jobs.get(i);
+                job.await();
+                if (listener.isCancelled() || job.getStatus() == JobHandle.Status.CANCELLED) {
+                    throw new IOException("Process cancelled");
+                }
+                Throwable failure = job.getFailure();
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                } else if (failure != null) {
+                    throw new IOException("Chunk recognition failed: " + failure, failure);
+                }
+                WordTimeline chunkWords = dropWordsBefore(results[i], lastEndMs);
+                results[i] = null;
+                if (chunkWords.size() > 0) {
+                    lastEndMs = chunkWords.getEndMs(chunkWords.size() - 1);
+                }
+                listener.onChunkRecognized(chunkWords, (int) (coreEnds.get(i) * 1000 / BYTES_PER_SECOND));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Recognition interrupted", e);
+        } finally {
+            // Stop queued and running chunks after a failure and let them end before the file closes.
+            for (JobHandle job : jobs) {
+                job.cancel();
+            }
+            awaitQuietly(jobs);
+            raf.close();
+        }
+    }
+
+    private static void awaitQuietly(List<JobHandle> jobs) {
+        try {
+            for (JobHandle job : jobs) {
+                job.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private WordTimeline recognizeChunk(FileChannel channel, long dataOffset, long readStart, long readEnd,
+                                        long coreStart, long coreEnd, long totalBytes, JobHandle job,
+                                        Listener listener, AtomicLong processedBytes) throws IOException {
+        int offsetMs = (int) (readStart * 1000 / BYTES_PER_SECOND);
+        int coreStartMs = (int) (coreStart * 1000 / BYTES_PER_SECOND);
+        int coreEndMs = (int) (coreEnd * 1000 / BYTES_PER_SECOND);
+        boolean lastChunk = coreEnd >= totalBytes;
+        WordTimeline chunkWords = new WordTimeline();
+        WordTimeline resultWords = new WordTimeline(64);
+        VoskResultParser parser = new VoskResultParser();
+        VoiceActivityDetector vad = skipSilence ? new VoiceActivityDetector() : null;
+
+        try (Recognizer recognizer = new Recognizer(model, 16000.0f)) {
+            recognizer.setWords(true);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = readStart;
+            while (position < readEnd) {
+                if (job.isCancelled() || listener.isCancelled()) {
+                    throw new IOException("Process cancelled");
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, readEnd - position));
+                int read = channel.read(buffer, dataOffset + position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+
+                byte[] speech = buffer.array();
+                int speechLength = read;
+                if (vad != null) {
+                    speechLength = vad.process(speech, read);
+                    speech = vad.getOutput();
+                }
+                if (speechLength > 0 && recognizer.acceptWaveForm(speech, speechLength)) {
+                    keepCoreWords(recognizer.getResult(), parser, resultWords, vad, offsetMs, coreStartMs,
+                            coreEndMs, lastChunk, chunkWords);
+                }
+                // Only the core range counts towards progress so overlaps are not double-counted.
+                long coreRead = Math.min(position, coreEnd) - Math.max(position - read, coreStart);
+                if (coreRead > 0) {
+                    listener.onProgress(processedBytes.addAndGet(coreRead), totalBytes);
+                }
+            }
+            if (vad != null) {
+                int tailLength = vad.flush();
+                if (tailLength > 0 && recognizer.acceptWaveForm(vad.getOutput(), tailLength)) {
+                    keepCoreWords(recognizer.getResult(), parser, resultWords, vad, offsetMs, coreStartMs,
+                            coreEndMs, lastChunk, chunkWords);
+                }
+            }
+            keepCoreWords(recognizer.getFinalResult(), parser, resultWords, vad, offsetMs, coreStartMs, coreEndMs,
+                    lastChunk, chunkWords);
+        }
+        return chunkWords;
+    }
+
+    private void keepCoreWords(String result, VoskResultParser parser, WordTimeline resultWords,
+                               VoiceActivityDetector vad, int offsetMs, int coreStartMs, int coreEndMs,
+                               boolean lastChunk, WordTimeline chunkWords) {
+        resultWords.clear();
+        parser.parseWords(result, resultWords);
+        for (int i = 0; i < resultWords.size(); i++) {
+            int start = toSourceMs(vad, resultWords.getStartMs(i)) + offsetMs;
+            int end = toSourceMs(vad, resultWords.getEndMs(i)) + offsetMs;
+            int mid = (start + end) / 2;
+            if (mid >= coreStartMs - SEAM_SLACK_MS && (mid < coreEndMs + SEAM_SLACK_MS || lastChunk)) {
+                chunkWords.addWord(resultWords, i, start, end);
+            }
+        }
+        chunkWords.endUtterance();
+    }
+
+    private static int toSourceMs(VoiceActivityDetector vad, int fedMs) {
+        return vad == null ? fedMs : (int) (vad.toSourceSeconds(fedMs / 1000.0) * 1000);
+    }
+
+    /** Drops the leading words of {@code chunk} whose midpoint lies before {@code endMs}. */
+    static WordTimeline dropWordsBefore(WordTimeline chunk, int endMs) {
+        int skip = 0;
+        while (skip < chunk.size() && (chunk.getStartMs(skip) + chunk.getEndMs(skip)) / 2 < endMs) {
+            skip++;
+        }
+        if (skip == 0) {
+            return chunk;
+        }
+        WordTimeline kept = new WordTimeline(chunk.size() - skip);
+        int utterance = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            if (i >= skip) {
+                kept.addWord(chunk, i, chunk.getStartMs(i), chunk.getEndMs(i));
+            }
+            while (utterance < chunk.utteranceCount() && chunk.utteranceEnd(utterance) == i + 1) {
+                kept.endUtterance();
+                utterance++;
+            }
+        }
+        kept.endUtterance();
+        return kept;
+    }
+}
@@ -0,0 +1,156 @@
+package com.serhat.autosub;
+
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Reads raw PCM written by FFmpeg into a named pipe and hands it to the recognizer through a
+ * bounded queue of reusable chunks, so decoding and recognition run at the same time while
+ * memory stays capped at {@code capacity * chunkSize} bytes.
+ */
+public class PcmPipeStream extends InputStream {
+    private static final String TAG = "PcmPipeStream";
+
+    private static class Chunk {
+        final byte[] data;
+        int length;
+
+        Chunk(int size) {
+            data = new byte[size];
+        }
+    }
+
+    private static final Chunk END_OF_STREAM = new Chunk(0);
+
+    private final String pipePath;
+    private final BlockingQueue<Chunk> filled;
+    private final BlockingQueue<Chunk> free;
+    private final CountDownLatch producerDone = new CountDownLatch(1);
+    private Thread readerThread;
+    private volatile boolean opened = false;
+    private volatile boolean closed = false;
+    private volatile IOException producerError;
+    private volatile IOException readerError;
+
+    private Chunk current;
+    private int currentPos;
+    private boolean reachedEnd = false;
+
+    public PcmPipeStream(String pipePath, int chunkSize, int capacity) {
+        this.pipePath = pipePath;
+        this.filled = new ArrayBlockingQueue<>(capacity + 1);
+        this.free = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            free.add(new Chunk(chunkSize));
+        }
+    }
+
+    public void start() {
+        readerThread = new Thread(this::pumpPipe, "pcm-pipe-reader");
+        readerThread.start();
+    }
+
+    /**
+     * Called once the FFmpeg session writing into the pipe has completed. A non-null error is
+     * rethrown to the consumer after the buffered audio has been drained.
+     */
+    public void finish(IOException error) {
+        producerError = error;
+        producerDone.countDown();
+        if (!opened) {
+            // FFmpeg never opened the pipe for writing, so the reader is still blocked in open().
+            try (FileOutputStream unblock = new FileOutputStream(pipePath)) {
+                Log.d(TAG, "Released pipe reader after producer exited early");
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to release pipe reader", e);
+            }
+        }
+    }
+
+    private void pumpPipe() {
+        try (FileInputStream in = new FileInputStream(pipePath)) {
+            opened = true;
+            while (!closed) {
+                Chunk chunk = free.take();
+                int read = in.read(chunk.data, 0, chunk.data.length);
+                if (read == -1) {
+                    free.offer(chunk);
+                    break;
+                }
+                chunk.length = read;
+                filled.put(chunk);
+            }
+        } catch (IOException e) {
+            readerError = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            opened = true;
+            filled.offer(END_OF_STREAM);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (reachedEnd) {
+            return -1;
+        }
+        try {
+            if (current == null) {
+                current = filled.take();
+                currentPos = 0;
+                if (current == END_OF_STREAM) {
+                    current = null;
+                    reachedEnd = true;
+                    awaitProducer();
+                    return -1;
+                }
+            }
+            int n = Math.min(len, current.length - currentPos);
+            System.arraycopy(current.data, currentPos, b, off, n);
+            currentPos += n;
+            if (currentPos >= current.length) {
+                free.offer(current);
+                current = null;
+            }
+            return n;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for audio", e);
+        }
+    }
+
+    private void awaitProducer() throws IOException, InterruptedException {
+        producerDone.await();
+        if (producerError != null) {
+            throw producerError;
+        }
+        if (readerError != null) {
+            throw readerError;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        filled.clear();
+        current = null;
+        if (readerThread != null) {
+            readerThread.interrupt();
+        }
+    }
+}
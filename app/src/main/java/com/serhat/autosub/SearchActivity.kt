@@ -0,0 +1,78 @@
+package com.serhat.autosub
+
+import android.content.Intent
+import android.os.Bundle
+import android.view.KeyEvent
+import android.view.View
+import android.view.inputmethod.EditorInfo
+import android.widget.TextView
+import androidx.appcompat.app.AppCompatActivity
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import com.google.android.material.appbar.MaterialToolbar
+import com.google.android.material.textfield.TextInputEditText
+
+/** Searches the transcripts of every indexed video and opens a hit at the time it was said. */
+class SearchActivity : AppCompatActivity() {
+
+    private lateinit var adapter: SearchHitAdapter
+    private lateinit var emptyText: TextView
+    private var searchJob: JobHandle? = null
+
+    override fun onCreate(savedInstanceState: Bundle?) {
+        super.onCreate(savedInstanceState)
+        setContentView(R.layout.activity_search)
+
+        val toolbar = findViewById<MaterialToolbar>(R.id.toolbar)
+        val recycler = findViewById<RecyclerView>(R.id.recycler)
+        val searchInput = findViewById<TextInputEditText>(R.id.searchInput)
+        emptyText = findViewById(R.id.emptyText)
+
+        toolbar.setNavigationOnClickListener { onBackPressedDispatcher.onBackPressed() }
+
+        adapter = SearchHitAdapter { hit -> openHit(hit) }
+        recycler.layoutManager = LinearLayoutManager(this)
+        recycler.adapter = adapter
+
+        searchInput.setOnEditorActionListener { v, actionId, event ->
+            if (actionId == EditorInfo.IME_ACTION_SEARCH
+                || (event != null && event.keyCode == KeyEvent.KEYCODE_ENTER)) {
+                search(v.text?.toString().orEmpty())
+                true
+            } else {
+                false
+            }
+        }
+    }
+
+    override fun onDestroy() {
+        searchJob?.cancel()
+        super.onDestroy()
+    }
+
+    private fun search(query: String) {
+        searchJob?.cancel()
+        searchJob = App.getTaskScheduler(this).submit(TaskScheduler.Pool.IO, TaskScheduler.PRIORITY_HIGH,
+            "search") { job ->
+            val hits = App.getTranscriptIndex(this).search(query, MAX_HITS)
+            runOnUiThread {
+                if (!job.isCancelled && !isFinishing) {
+                    adapter.submitList(hits)
+                    emptyText.visibility = if (hits.isEmpty()) View.VISIBLE else View.GONE
+                }
+            }
+        }
+    }
+
+    private fun openHit(hit: TranscriptIndex.Hit) {
+        startActivity(Intent(this, MainActivity::class.java).apply {
+            putExtra(MainActivity.EXTRA_VIDEO_URI, hit.videoUri.toString())
+            putExtra(MainActivity.EXTRA_LANG_CODE, hit.languageCode)
+            putExtra(MainActivity.EXTRA_SEEK_MS, hit.timeMs)
+        })
+    }
+
+    companion object {
+        private const val MAX_HITS = 200
+    }
+}
@@ -0,0 +1,60 @@
+package com.serhat.autosub
+
+import android.view.LayoutInflater
+import android.view.View
+import android.view.ViewGroup
+import android.widget.TextView
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListAdapter
+import androidx.recyclerview.widget.RecyclerView
+import java.util.Locale
+
+class SearchHitAdapter(
+    private val onClick: (TranscriptIndex.Hit) -> Unit
+) : ListAdapter<TranscriptIndex.Hit, SearchHitAdapter.VH>(Diff()) {
+
+    override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): VH {
+        val v = LayoutInflater.from(parent.context)
+            .inflate(R.layout.item_search_hit, parent, false)
+        return VH(v)
+    }
+
+    override fun onBindViewHolder(holder: VH, position: Int) {
+        holder.bind(getItem(position))
+    }
+
+    inner class VH(itemView: View) : RecyclerView.ViewHolder(itemView) {
+        private val title = itemView.findViewById<TextView>(R.id.hitTitle)
+        private val time = itemView.findViewById<TextView>(R.id.hitTime)
+        private val snippet = itemView.findViewById<TextView>(R.id.hitSnippet)
+
+        fun bind(item: TranscriptIndex.Hit) {
+            title.text = item.title
+            time.text = formatTime(item.timeMs)
+            snippet.text = item.snippet
+            itemView.setOnClickListener { onClick(item) }
+        }
+    }
+
+    class Diff : DiffUtil.ItemCallback<TranscriptIndex.Hit>() {
+        override fun areItemsTheSame(oldItem: TranscriptIndex.Hit, newItem: TranscriptIndex.Hit) =
+            oldItem.videoUri == newItem.videoUri && oldItem.timeMs == newItem.timeMs
+
+        override fun areContentsTheSame(oldItem: TranscriptIndex.Hit, newItem: TranscriptIndex.Hit) =
+            oldItem.snippet == newItem.snippet && oldItem.title == newItem.title
+    }
+
+    companion object {
+        fun formatTime(timeMs: Long): String {
+            val totalSeconds = timeMs / 1000
+            val hours = totalSeconds / 3600
+            val minutes = (totalSeconds / 60) % 60
+            val seconds = totalSeconds % 60
+            return if (hours > 0) {
+                String.format(Locale.US, "%d:%02d:%02d", hours, minutes, seconds)
+            } else {
+                String.format(Locale.US, "%d:%02d", minutes, seconds)
+            }
+        }
+    }
+}
@@ -15,10 +15,22 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.SubtitleViewHolder> {
+/**
+ * Shows the cue list, binding each row straight from the backing {@link CueList}. Appended cues
+ * are reported as an inserted range, and as a {@link CueEditor.ChangeListener} the adapter reports
+ * each edit as the ranges it touched, so no edit costs more than the rows it changed. Cue numbers
+ * come from positions; rows shifted by an edit get one number payload rebind once it finishes.
+ */
+public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.SubtitleViewHolder>
+        implements CueEditor.ChangeListener {
+
+    private static final String PAYLOAD_SELECTION = "selection";
+    private static final String PAYLOAD_NUMBER = "number";
 
     private List<SubtitleGenerator.SubtitleEntry> subtitles = new ArrayList<>();
     private int highlightedPosition = -1;
+    // First position whose number the current edit shifted, or -1.
+    private int renumberFrom = -1;
     private OnSubtitleClickListener onSubtitleClickListener;
     private OnPlayClickListener onPlayClickListener;
     private OnDeleteClickListener onDeleteClickListener;
@@ -26,6 +38,10 @@ public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.Subtit
     private Set<Integer> selectedPositions = new HashSet<>();
     private OnItemLongClickListener onItemLongClickListener;
 
+    public SubtitleAdapter() {
+        setHasStableIds(true);
+    }
+
     public interface OnSubtitleClickListener {
         void onSubtitleClick(int position, SubtitleGenerator.SubtitleEntry entry);
     }
@@ -58,20 +74,77 @@ public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.Subtit
         this.onItemLongClickListener = listener;
     }
 
+    /**
+     * Shows {@code subtitles} in place of the current list. The new cues never share ids with the
+     * old ones, so this is reported as one removed and one inserted range rather than diffed.
+     */
     public void setSubtitles(List<SubtitleGenerator.SubtitleEntry> subtitles) {
         highlightedPosition = -1;
+        selectedPositions.clear();
+        renumberFrom = -1;
+        int oldSize = this.subtitles.size();
         this.subtitles = subtitles;
-        notifyDataSetChanged();
+        if (oldSize > 0) {
+            notifyItemRangeRemoved(0, oldSize);
+        }
+        if (!subtitles.isEmpty()) {
+            notifyItemRangeInserted(0, subtitles.size());
+        }
+    }
+
+    /** Adds {@code appended} to the backing list and reports just that range. */
+    public void appendSubtitles(List<SubtitleGenerator.SubtitleEntry> appended) {
+        int insertPosition = subtitles.size();
+        subtitles.addAll(appended);
+        notifyItemRangeInserted(insertPosition, appended.size());
+    }
+
+    @Override
+    public void onCuesRemoved(int from, int count) {
+        if (highlightedPosition >= from + count) {
+            highlightedPosition -= count;
+        } else if (highlightedPosition >= from) {
+            highlightedPosition = -1;
+        }
+        notifyItemRangeRemoved(from, count);
+        renumberFrom(from);
+    }
+
+    @Override
+    public void onCuesInserted(int index, List<SubtitleGenerator.SubtitleEntry> entries) {
+        if (highlightedPosition >= index) {
+            highlightedPosition += entries.size();
+        }
+        notifyItemRangeInserted(index, entries.size());
+        renumberFrom(index + entries.size());
+    }
+
+    @Override
+    public void onCueChanged(int index, SubtitleGenerator.SubtitleEntry entry) {
+        notifyItemChanged(index);
+    }
+
+    /** Rebinds the numbers of every row the edit shifted, in one range however many runs it had. */
+    @Override
+    public void onEditFinished() {
+        if (renumberFrom >= 0 && renumberFrom < subtitles.size()) {
+            notifyItemRangeChanged(renumberFrom, subtitles.size() - renumberFrom, PAYLOAD_NUMBER);
+        }
+        renumberFrom = -1;
+    }
+
+    private void renumberFrom(int position) {
+        renumberFrom = renumberFrom < 0 ? position : Math.min(renumberFrom, position);
     }
 
     public void setHighlightedPosition(int position) {
         int oldHighlightedPosition = highlightedPosition;
         highlightedPosition = position;
         if (oldHighlightedPosition != -1) {
-            notifyItemChanged(oldHighlightedPosition);
+            notifyItemChanged(oldHighlightedPosition, PAYLOAD_SELECTION);
         }
         if (highlightedPosition != -1) {
-            notifyItemChanged(highlightedPosition);
+            notifyItemChanged(highlightedPosition, PAYLOAD_SELECTION);
         }
     }
 
@@ -80,7 +153,7 @@ public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.Subtit
         if (!isSelectionMode) {
             selectedPositions.clear();
         }
-        notifyDataSetChanged();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
     }
 
     public boolean isSelectionMode() {
@@ -97,7 +170,7 @@ public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.Subtit
         } else {
             selectedPositions.add(position);
         }
-        notifyItemChanged(position, "selection");
+        notifyItemChanged(position, PAYLOAD_SELECTION);
     }
 
     @NonNull
@@ -109,8 +182,7 @@ public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.Subtit
 
     @Override
     public void onBindViewHolder(@NonNull SubtitleViewHolder holder, int position) {
-        SubtitleGenerator.SubtitleEntry entry = subtitles.get(position);
-        holder.bind(entry, position == highlightedPosition, selectedPositions.contains(position));
+        holder.bind(subtitles.get(position), position + 1, position == highlightedPosition, selectedPositions.contains(position));
     }
 
     @Override
@@ -118,16 +190,21 @@ public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.Subtit
         return subtitles.size();
     }
 
+    @Override
+    public long getItemId(int position) {
+        return subtitles.get(position).getId();
+    }
+
     @Override
     public void onBindViewHolder(@NonNull SubtitleViewHolder holder, int position, @NonNull List<Object> payloads) {
         if (payloads.isEmpty()) {
             super.onBindViewHolder(holder, position, payloads);
         } else {
-            if (payloads.contains("selection")) {
-                holder.itemView.setActivated(selectedPositions.contains(position));
-                holder.itemView.setBackgroundColor(selectedPositions.contains(position) ? 
-                    holder.itemView.getContext().getResources().getColor(R.color.selected_subtitle) : 
-                    Color.TRANSPARENT);
+            if (payloads.contains(PAYLOAD_NUMBER)) {
+                holder.numberTV.setText(String.valueOf(position + 1));
+            }
+            if (payloads.contains(PAYLOAD_SELECTION)) {
+                holder.bindBackground(position == highlightedPosition, selectedPositions.contains(position));
             }
         }
     }
@@ -155,9 +232,7 @@ public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.Subtit
             playBT.setOnClickListener(v -> {
                 int position = getBindingAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && onPlayClickListener != null) {
-                    SubtitleGenerator.SubtitleEntry entry = subtitles.get(position);
-                    long startTimeMs = parseTimeToMs(entry.getStartTime());
-                    onPlayClickListener.onPlayClick(startTimeMs);
+                    onPlayClickListener.onPlayClick(subtitles.get(position).getStartMs());
                 }
             });
 
@@ -183,19 +258,20 @@ public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.Subtit
                 } else {
                     int position = getBindingAdapterPosition();
                     if (position != RecyclerView.NO_POSITION && onPlayClickListener != null) {
-                        SubtitleGenerator.SubtitleEntry entry = subtitles.get(position);
-                        long startTimeMs = parseTimeToMs(entry.getStartTime());
-                        onPlayClickListener.onPlayClick(startTimeMs);
+                        onPlayClickListener.onPlayClick(subtitles.get(position).getStartMs());
                     }
                 }
             });
         }
 
-        void bind(SubtitleGenerator.SubtitleEntry entry, boolean isHighlighted, boolean isSelected) {
-            numberTV.setText(String.valueOf(entry.getNumber()));
-            timeTV.setText(String.format("%s --> %s", entry.getStartTime(), entry.getEndTime()));
+        void bind(SubtitleGenerator.SubtitleEntry entry, int number, boolean isHighlighted, boolean isSelected) {
+            numberTV.setText(String.valueOf(number));
+            timeTV.setText(SubtitleTime.formatSrt(entry.getStartMs()) + " --> " + SubtitleTime.formatSrt(entry.getEndMs()));
             textTV.setText(entry.getText());
-            
+            bindBackground(isHighlighted, isSelected);
+        }
+
+        void bindBackground(boolean isHighlighted, boolean isSelected) {
             if (isSelectionMode) {
                 itemView.setBackgroundColor(isSelected ? 
                     itemView.getContext().getResources().getColor(R.color.selected_subtitle,itemView.getContext().getTheme()) :
@@ -210,30 +286,8 @@ public class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.Subtit
         }
     }
 
-    private long parseTimeToMs(String timeString) {
-        String[] parts = timeString.split("[:,]");
-        return Long.parseLong(parts[0]) * 3600000L +
-               Long.parseLong(parts[1]) * 60000L +
-               Long.parseLong(parts[2]) * 1000L +
-               Long.parseLong(parts[3]);
-    }
-
     public List<SubtitleGenerator.SubtitleEntry> getSubtitles() {
         return subtitles;
     }
 
-    public void updateSubtitle(int position, String newText) {
-        if (position >= 0 && position < subtitles.size()) {
-            subtitles.get(position).setText(newText);
-            notifyItemChanged(position);
-        }
-    }
-
-    public void deleteSubtitle(int position) {
-        if (position >= 0 && position < subtitles.size()) {
-            subtitles.remove(position);
-            notifyItemRemoved(position);
-            notifyItemRangeChanged(position, subtitles.size() - position);
-        }
-    }
 }
@@ -8,43 +8,72 @@ import com.arthenica.ffmpegkit.FFmpegKit;
 import com.arthenica.ffmpegkit.FFmpegSession;
 import com.arthenica.ffmpegkit.ReturnCode;
 import com.arthenica.ffmpegkit.FFmpegKitConfig;
+import com.arthenica.ffmpegkit.FFprobeKit;
+import com.arthenica.ffmpegkit.MediaInformation;
+import com.arthenica.ffmpegkit.MediaInformationSession;
+import com.arthenica.ffmpegkit.StatisticsCallback;
 
-import org.json.JSONObject;
 import org.vosk.LibVosk;
 import org.vosk.LogLevel;
 import org.vosk.Model;
 import org.vosk.Recognizer;
-import org.vosk.android.StorageService;
-import org.json.JSONArray;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.BufferedReader;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.io.InputStreamReader;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collections;
 
 public class SubtitleGenerator {
     private static final String TAG = "SubtitleGenerator";
     private final Context context;
     private Model model;
-    private final ExecutorService executorService;
+    private final TaskScheduler scheduler;
     private static final int MAX_SUBTITLE_LENGTH = 42; 
-    private volatile boolean isCancelled = false;
-    private File audioFile;
+    private static final int SAMPLE_RATE = 16000;
+    private static final int BYTES_PER_SECOND = SAMPLE_RATE * 2;
+    private static final int PIPE_CHUNK_SIZE = 8192;
+    private static final int PIPE_CHUNK_CAPACITY = 64;
+    private volatile JobHandle generationJob;
+    private volatile JobHandle exportJob;
+    private boolean streamAudio = true;
+    private boolean parallelRecognition = false;
+    private boolean skipSilence = true;
+    private boolean liveCaptions = false;
+    private boolean segmentedBurnIn = true;
+    private boolean smartRender = true;
+    private static final long LIVE_CAPTION_INTERVAL_MS = 250;
+    private static final int PARALLEL_WINDOW_SECONDS = 60;
+    private static final int PARALLEL_OVERLAP_SECONDS = 3;
+    private volatile WordTimeline wordTimeline;
+    private String modelName;
+    private String languageCode;
+    private volatile boolean released = false;
+    private final TranscriptionCache transcriptionCache;
+    private static final long TRANSCRIPTION_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final int CHECKPOINT_INTERVAL_MS = 15000;
+    private static final String EXPORT_STATS_FILE = "export_stats.jsonl";
+    private static final String PREFS = "app_settings";
+    private static final String KEY_PARALLEL_RECOGNITION = "parallel_recognition";
 
     public SubtitleGenerator(Context context) {
         this.context = context;
-        this.executorService = Executors.newSingleThreadExecutor();
+        this.scheduler = App.getTaskScheduler(context);
+        this.transcriptionCache = new TranscriptionCache(new File(context.getFilesDir(), "transcript_cache"),
+                TRANSCRIPTION_CACHE_BYTES);
+        this.parallelRecognition = isParallelRecognitionEnabled(context);
         LibVosk.setLogLevel(LogLevel.INFO);
         setupFontDirectories();
     }
@@ -56,67 +85,257 @@ public class SubtitleGenerator {
 
     public void initModel(ModelInitCallback callback, String code) {
         Log.d(TAG,"Called Model Init");
-        String modelName = "model-hi-in";
-        if(code == "hi"){
-            modelName  = "model-hi-in";
+        release();
+        released = false;
+        App.getModelRegistry(context).acquire(code, new ModelRegistry.Callback() {
+            @Override
+            public void onModelReady(Model model, String modelName) {
+                if (released) {
+                    App.getModelRegistry(context).release(modelName);
+                    return;
+                }
+                SubtitleGenerator.this.model = model;
+                SubtitleGenerator.this.modelName = modelName;
+                SubtitleGenerator.this.languageCode = code;
+                Log.d(TAG, "Model initialized");
+                callback.onModelInitialized();
             }
-        else{
-            modelName = "model-en-us";
-        }
-        StorageService.unpack(context, modelName, "model",
-                (model) -> {
-                    this.model = model;
-                    Log.d(TAG, "Model initialized");
-                    callback.onModelInitialized();
-                },
-                (exception) -> {
-                    Log.e(TAG, "Failed to unpack the model: " + exception.getMessage());
-                    callback.onError(exception.getMessage());
-                });
+
+            @Override
+            public void onError(String errorMessage) {
+                callback.onError(errorMessage);
+            }
+        });
+    }
+
+    public void release() {
+        released = true;
+        if (modelName != null) {
+            App.getModelRegistry(context).release(modelName);
+            model = null;
+            modelName = null;
+        }
     }
 
     public void cancelGeneration() {
-        isCancelled = true;
+        JobHandle job = generationJob;
+        if (job != null) {
+            job.cancel();
+        }
     }
 
-    public void generateSubtitles(Uri videoUri, SubtitleGenerationCallback callback) {
-        executorService.execute(() -> {
-            try {
-                isCancelled = false;
-                Log.d(TAG, "Starting subtitle generation process");
-                callback.onProgressUpdate(0);
+    public void cancelExport() {
+        JobHandle job = exportJob;
+        if (job != null) {
+            job.cancel();
+        }
+    }
+
+    private void cancelOnJobCancel(JobHandle job, FFmpegSession session) {
+        job.setCancelAction(() -> {
+            Log.d(TAG, "Cancelling FFmpeg session " + session.getSessionId());
+            FFmpegKit.cancel(session.getSessionId());
+        });
+    }
+
+    /** Runs {@code command} asynchronously and waits for it; cancelling {@code job} cancels the session. */
+    private FFmpegSession executeCancellable(String command, JobHandle job) throws IOException {
+        return executeCancellable(command, job, null);
+    }
+
+    private FFmpegSession executeCancellable(String command, JobHandle job, StatisticsCallback statistics)
+            throws IOException {
+        CountDownLatch completed = new CountDownLatch(1);
+        FFmpegSession session = FFmpegKit.executeAsync(command, finished -> completed.countDown(), null, statistics);
+        cancelOnJobCancel(job, session);
+        try {
+            completed.await();
+        } catch (InterruptedException e) {
+            FFmpegKit.cancel(session.getSessionId());
+            Thread.currentThread().interrupt();
+            throw new IOException("FFmpeg command interrupted", e);
+        } finally {
+            job.setCancelAction(null);
+        }
+        return session;
+    }
 
-                Log.d(TAG, "Extracting audio from video");
-                audioFile = extractAudioFromVideo(videoUri);
-                callback.onProgressUpdate(20);
+    private void reportProgress(JobHandle job, SubtitleGenerationCallback callback, int progress) {
+        job.setProgress(progress);
+        callback.onProgressUpdate(progress);
+    }
+
+    public void setStreamAudio(boolean streamAudio) {
+        this.streamAudio = streamAudio;
+    }
+
+    public void setParallelRecognition(boolean parallelRecognition) {
+        this.parallelRecognition = parallelRecognition;
+    }
+
+    /** The saved setting new generators start with; parallel runs need a WAV so they never stream. */
+    public static boolean isParallelRecognitionEnabled(Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
+                .getBoolean(KEY_PARALLEL_RECOGNITION, false);
+    }
 
-                if (isCancelled) {
+    public static void setParallelRecognitionEnabled(Context context, boolean enabled) {
+        context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit()
+                .putBoolean(KEY_PARALLEL_RECOGNITION, enabled)
+                .apply();
+    }
+
+    public void setSkipSilence(boolean skipSilence) {
+        this.skipSilence = skipSilence;
+    }
+
+    public void setSegmentedBurnIn(boolean segmentedBurnIn) {
+        this.segmentedBurnIn = segmentedBurnIn;
+    }
+
+    public void setSmartRender(boolean smartRender) {
+        this.smartRender = smartRender;
+    }
+
+    public void setLiveCaptions(boolean liveCaptions) {
+        this.liveCaptions = liveCaptions;
+    }
+
+    /**
+     * Starts generating subtitles for {@code videoUri}, cancelling any generation still running.
+     * The job holds its own reference to the model until it finishes, so {@link #release()} never
+     * closes the model under a running recognizer.
+     */
+    public JobHandle generateSubtitles(Uri videoUri, SubtitleGenerationCallback callback) {
+        cancelGeneration();
+        Model jobModel = model;
+        String jobModelName = modelName;
+        if (jobModelName != null) {
+            App.getModelRegistry(context).retain(jobModelName);
+        }
+        JobHandle handle = scheduler.submit(TaskScheduler.Pool.RECOGNITION, TaskScheduler.PRIORITY_NORMAL,
+                "generate", job -> {
+            File audioFile = null;
+            TranscriptionCheckpoint checkpoint = null;
+            try {
+                if (job.isCancelled()) {
                     callback.onCancelled();
                     return;
                 }
+                Log.d(TAG, "Starting subtitle generation process");
+                reportProgress(job, callback, 0);
+
+                String cacheKey = transcriptionCacheKey(videoUri);
+                WordTimeline timeline = cacheKey != null ? transcriptionCache.get(cacheKey) : null;
+                if (timeline != null) {
+                    Log.d(TAG, "Transcription cache hit for " + videoUri);
+                    List<SubtitleEntry> cachedEntries = new ArrayList<>();
+                    for (int u = 0; u < timeline.utteranceCount(); u++) {
+                        appendSegments(timeline, timeline.utteranceStart(u), timeline.utteranceEnd(u), cachedEntries);
+                    }
+                    wordTimeline = timeline;
+                    indexTranscript(videoUri, cacheKey, timeline);
+                    deliverAppended(cachedEntries, 0, callback);
+                    reportProgress(job, callback, 100);
+                    callback.onSubtitlesGenerated(cachedEntries);
+                    return;
+                }
+                List<SubtitleEntry> subtitleEntries = new ArrayList<>();
+                int resumeMs = 0;
+                if (cacheKey != null) {
+                    checkpoint = new TranscriptionCheckpoint(new File(context.getFilesDir(),
+                            "checkpoints/" + cacheKey + ".ckpt"));
+                    timeline = checkpoint.restore();
+                }
+                if (timeline != null) {
+                    resumeMs = checkpoint.getResumeMs();
+                    Log.d(TAG, "Resuming transcription from checkpoint at " + resumeMs + " ms");
+                    for (int u = 0; u < timeline.utteranceCount(); u++) {
+                        appendSegments(timeline, timeline.utteranceStart(u), timeline.utteranceEnd(u), subtitleEntries);
+                    }
+                    deliverAppended(subtitleEntries, 0, callback);
+                } else {
+                    timeline = new WordTimeline();
+                }
+
+                if (streamAudio && !parallelRecognition) {
+                    Log.d(TAG, "Streaming audio from video into recognizer");
+                    streamAudioFromVideo(jobModel, videoUri, resumeMs, timeline, subtitleEntries, checkpoint, job,
+                            callback);
+                } else {
+                    Log.d(TAG, "Extracting audio from video");
+                    audioFile = extractAudioFromVideo(videoUri, job);
+                    reportProgress(job, callback, 20);
 
-                Log.d(TAG, "Performing speech recognition");
-                List<SubtitleEntry> subtitleEntries = processAudioFile(audioFile, callback);
-                callback.onProgressUpdate(95);
+                    if (job.isCancelled()) {
+                        callback.onCancelled();
+                        return;
+                    }
 
-                if (isCancelled) {
+                    Log.d(TAG, "Performing speech recognition");
+                    if (parallelRecognition) {
+                        processAudioFileParallel(jobModel, audioFile, resumeMs, timeline, subtitleEntries, checkpoint,
+                                job, callback);
+                    } else {
+                        processAudioFile(jobModel, audioFile, resumeMs, timeline, subtitleEntries, checkpoint, job,
+                                callback);
+                    }
+                }
+                reportProgress(job, callback, 95);
+
+                if (job.isCancelled()) {
                     callback.onCancelled();
                     return;
                 }
 
-                callback.onProgressUpdate(100);
+                wordTimeline = timeline;
+                if (cacheKey != null) {
+                    transcriptionCache.put(cacheKey, timeline);
+                }
+                if (checkpoint != null) {
+                    checkpoint.delete();
+                }
+                indexTranscript(videoUri, cacheKey, timeline);
+
+                reportProgress(job, callback, 100);
 
                 Log.d(TAG, "Subtitle generation completed");
                 callback.onSubtitlesGenerated(subtitleEntries);
             } catch (Exception e) {
+                if (job.isCancelled()) {
+                    Log.d(TAG, "Subtitle generation cancelled");
+                    callback.onCancelled();
+                    return;
+                }
                 Log.e(TAG, "Error generating subtitles", e);
                 callback.onError("Error generating subtitles: " + e.getMessage());
+            } finally {
+                if (audioFile != null && audioFile.exists()) {
+                    audioFile.delete();
+                }
+                if (checkpoint != null) {
+                    checkpoint.close();
+                }
+                if (jobModelName != null) {
+                    App.getModelRegistry(context).release(jobModelName);
+                }
             }
         });
+        generationJob = handle;
+        return handle;
     }
 
-    private File extractAudioFromVideo(Uri videoUri) throws IOException {
-        audioFile = new File(context.getCacheDir(), "temp_audio.wav");
+    /** Adds a finished transcript to the library-wide search index on the IO pool. */
+    private void indexTranscript(Uri videoUri, String cacheKey, WordTimeline timeline) {
+        String title = getVideoNameFromUri(videoUri);
+        String code = languageCode;
+        scheduler.submit(TaskScheduler.Pool.IO, TaskScheduler.PRIORITY_LOW, "index",
+                job -> App.getTranscriptIndex(context).indexVideo(videoUri, title, code, cacheKey,
+                        timeline));
+    }
+
+    private File extractAudioFromVideo(Uri videoUri, JobHandle job) throws IOException {
+        File audioFile = File.createTempFile("temp_audio", ".wav", context.getCacheDir());
         String outputPath = audioFile.getAbsolutePath();
 
         String inputPath = FFmpegKitConfig.getSafParameterForRead(context, videoUri);
@@ -124,10 +343,14 @@ public class SubtitleGenerator {
         
         Log.d(TAG, "Executing FFmpeg command: " + command);
 
-        FFmpegSession session = FFmpegKit.execute(command);
+        FFmpegSession session = executeCancellable(command, job);
 
         if (ReturnCode.isSuccess(session.getReturnCode())) {
             return audioFile;
+        }
+        audioFile.delete();
+        if (job.isCancelled() || ReturnCode.isCancel(session.getReturnCode())) {
+            throw new IOException("Process cancelled");
         } else {
             String errorMessage = session.getOutput() + "\n" + session.getLogsAsString();
             Log.e(TAG, "FFmpeg error: " + errorMessage);
@@ -137,103 +360,321 @@ public class SubtitleGenerator {
 
     }
 
-    private List<SubtitleEntry> processAudioFile(File audioFile, SubtitleGenerationCallback callback) throws IOException {
-        List<SubtitleEntry> subtitles = new ArrayList<>();
+    /**
+     * Returns the cached word timeline of {@code videoUri} for the loaded model, or null if it was
+     * never transcribed with it. Call off the main thread.
+     */
+    public WordTimeline findCachedTimeline(Uri videoUri) {
+        String cacheKey = transcriptionCacheKey(videoUri);
+        return cacheKey != null ? transcriptionCache.get(cacheKey) : null;
+    }
+
+    private String transcriptionCacheKey(Uri videoUri) {
+        String modelUuid = modelName != null ? TranscriptionCache.readModelUuid(context, modelName) : null;
+        if (modelUuid == null) {
+            return null;
+        }
+        try {
+            return TranscriptionCache.fingerprint(context, videoUri, modelUuid);
+        } catch (IOException e) {
+            Log.e(TAG, "Error fingerprinting video", e);
+            return null;
+        }
+    }
+
+    private void streamAudioFromVideo(Model model, Uri videoUri, int resumeMs, WordTimeline timeline,
+                                      List<SubtitleEntry> subtitles, TranscriptionCheckpoint checkpoint,
+                                      JobHandle job, SubtitleGenerationCallback callback) throws IOException {
+        long totalBytes = (long) (probeDurationSeconds(videoUri) * BYTES_PER_SECOND);
+        String pipePath = FFmpegKitConfig.registerNewFFmpegPipe(context);
+        if (pipePath == null) {
+            throw new IOException("Could not create FFmpeg pipe");
+        }
+
+        PcmPipeStream pcmStream = new PcmPipeStream(pipePath, PIPE_CHUNK_SIZE, PIPE_CHUNK_CAPACITY);
+        pcmStream.start();
+
+        String inputPath = FFmpegKitConfig.getSafParameterForRead(context, videoUri);
+        String seek = resumeMs > 0 ? String.format(Locale.US, "-ss %.3f ", resumeMs / 1000.0) : "";
+        String command = String.format("-y %s-i %s -vn -f s16le -acodec pcm_s16le -ar 16000 -ac 1 %s", seek, inputPath, pipePath);
+
+        Log.d(TAG, "Executing FFmpeg command: " + command);
+
+        FFmpegSession session = FFmpegKit.executeAsync(command, completed -> {
+            if (ReturnCode.isSuccess(completed.getReturnCode())) {
+                pcmStream.finish(null);
+            } else {
+                String errorMessage = completed.getOutput() + "\n" + completed.getLogsAsString();
+                Log.e(TAG, "FFmpeg error: " + errorMessage);
+                pcmStream.finish(new IOException("FFmpeg command failed with state " + completed.getState()
+                        + " and rc " + completed.getReturnCode() + ". Error: " + errorMessage));
+            }
+        });
+        cancelOnJobCancel(job, session);
+
+        try {
+            processAudioStream(model, pcmStream, totalBytes, 0, 95, resumeMs, timeline, subtitles, checkpoint, job,
+                    callback);
+        } finally {
+            job.setCancelAction(null);
+            if (session.getReturnCode() == null) {
+                FFmpegKit.cancel(session.getSessionId());
+            }
+            pcmStream.close();
+            FFmpegKitConfig.closeFFmpegPipe(pipePath);
+        }
+    }
+
+    private double probeDurationSeconds(Uri videoUri) {
+        try {
+            MediaInformationSession session = FFprobeKit.getMediaInformation(
+                    FFmpegKitConfig.getSafParameterForRead(context, videoUri));
+            MediaInformation information = session.getMediaInformation();
+            if (information != null && information.getDuration() != null) {
+                return Double.parseDouble(information.getDuration());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error probing media duration", e);
+        }
+        return 0;
+    }
+
+    private void processAudioFile(Model model, File audioFile, int resumeMs, WordTimeline timeline, List<SubtitleEntry> subtitles,
+                                  TranscriptionCheckpoint checkpoint, JobHandle job,
+                                  SubtitleGenerationCallback callback) throws IOException {
+        try (FileInputStream fis = new FileInputStream(audioFile)) {
+            long skip = 44 + (long) resumeMs * BYTES_PER_SECOND / 1000 / 2 * 2;
+            if (fis.skip(skip) != skip) throw new IOException("Audio file too short");
+            processAudioStream(model, fis, audioFile.length() - 44, 20, 75, resumeMs, timeline, subtitles, checkpoint, job,
+                    callback);
+        }
+    }
+
+    /**
+     * Recognizes {@code audioFile} in parallel windows from {@code resumeMs}. There are no partial
+     * results to show as live captions; with a checkpoint, every finished window is saved.
+     */
+    private void processAudioFileParallel(Model model, File audioFile, int resumeMs, WordTimeline timeline,
+                                          List<SubtitleEntry> subtitles, TranscriptionCheckpoint checkpoint,
+                                          JobHandle job, SubtitleGenerationCallback callback) throws IOException {
+        ParallelRecognizer recognizer = new ParallelRecognizer(model, scheduler, PARALLEL_WINDOW_SECONDS,
+                PARALLEL_OVERLAP_SECONDS, skipSilence);
+        int keptEndMs = timeline.size() > 0 ? timeline.getEndMs(timeline.size() - 1) : 0;
+
+        recognizer.recognize(audioFile, 44, audioFile.length() - 44, resumeMs, keptEndMs,
+                new ParallelRecognizer.Listener() {
+            private int lastReportedProgress = 20;
+            private int delivered = subtitles.size();
+
+            @Override
+            public boolean isCancelled() {
+                return job.isCancelled();
+            }
+
+            @Override
+            public synchronized void onProgress(long processedBytes, long totalBytes) {
+                int currentProgress = (int) (20 + processedBytes * 75 / totalBytes);
+                if (currentProgress > lastReportedProgress) {
+                    lastReportedProgress = currentProgress;
+                    reportProgress(job, callback, currentProgress);
+                }
+            }
+
+            @Override
+            public void onChunkRecognized(WordTimeline chunk, int coreEndMs) {
+                // Segment against the merged timeline so cue word ranges index wordTimeline.
+                int firstUtterance = timeline.utteranceCount();
+                timeline.append(chunk);
+                for (int u = firstUtterance; u < timeline.utteranceCount(); u++) {
+                    appendSegments(timeline, timeline.utteranceStart(u), timeline.utteranceEnd(u), subtitles);
+                }
+                delivered = deliverAppended(subtitles, delivered, callback);
+                if (checkpoint != null) {
+                    saveCheckpoint(checkpoint, timeline, coreEndMs);
+                }
+            }
+        });
+    }
+
+    /**
+     * Feeds {@code audioStream}, which starts {@code offsetMs} into the source, to the recognizer and
+     * appends the resulting cues to {@code subtitles}. With a checkpoint, the finalized utterances are
+     * saved at utterance boundaries every {@link #CHECKPOINT_INTERVAL_MS} of audio.
+     */
+    private void processAudioStream(Model model, InputStream audioStream, long totalBytes, int progressStart, int progressSpan,
+                                    int offsetMs, WordTimeline timeline, List<SubtitleEntry> subtitles,
+                                    TranscriptionCheckpoint checkpoint, JobHandle job,
+                                    SubtitleGenerationCallback callback) throws IOException {
+        VoiceActivityDetector vad = skipSilence ? new VoiceActivityDetector() : null;
+        VoskResultParser parser = new VoskResultParser();
         Recognizer recognizer = null;
         
         try {
-            recognizer = new Recognizer(model, 16000.0f);
+            recognizer = new Recognizer(model, SAMPLE_RATE);
             recognizer.setWords(true);
             
-            FileInputStream fis = new FileInputStream(audioFile);
-            if (fis.skip(44) != 44) throw new IOException("Audio file too short");
-            
             byte[] buffer = new byte[4096];
             int bytesRead;
-            long totalBytes = audioFile.length() - 44;
-            long processedBytes = 0;
-            int lastReportedProgress = 20;
+            long processedBytes = (long) offsetMs * BYTES_PER_SECOND / 1000;
+            int lastReportedProgress = progressStart;
+            int delivered = subtitles.size();
+            int lastCheckpointMs = offsetMs;
+            long lastLiveCaptionTime = 0;
+            String lastLiveCaption = "";
             
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                if (isCancelled) {
+            while ((bytesRead = audioStream.read(buffer)) != -1) {
+                if (job.isCancelled()) {
                     throw new IOException("Process cancelled");
                 }
 
-                if (recognizer.acceptWaveForm(buffer, bytesRead)) {
-                    String result = recognizer.getResult();
-                    processRecognitionResult(result, subtitles);
-                    callback.onPartialSubtitlesGenerated(new ArrayList<>(subtitles));
+                byte[] speech = buffer;
+                int speechLength = bytesRead;
+                if (vad != null) {
+                    speechLength = vad.process(buffer, bytesRead);
+                    speech = vad.getOutput();
+                }
+
+                if (speechLength > 0) {
+                    if (recognizer.acceptWaveForm(speech, speechLength)) {
+                        String result = recognizer.getResult();
+                        processRecognitionResult(parser, result, vad, offsetMs, timeline, subtitles);
+                        delivered = deliverAppended(subtitles, delivered, callback);
+                        if (checkpoint != null && timeline.size() > 0
+                                && timeline.getEndMs(timeline.size() - 1) - lastCheckpointMs >= CHECKPOINT_INTERVAL_MS) {
+                            lastCheckpointMs = timeline.getEndMs(timeline.size() - 1);
+                            saveCheckpoint(checkpoint, timeline, lastCheckpointMs);
+                        }
+                        if (liveCaptions && !lastLiveCaption.isEmpty()) {
+                            lastLiveCaption = "";
+                            callback.onLiveCaption(lastLiveCaption);
+                        }
+                    } else if (liveCaptions) {
+                        long now = System.currentTimeMillis();
+                        if (now - lastLiveCaptionTime >= LIVE_CAPTION_INTERVAL_MS) {
+                            lastLiveCaptionTime = now;
+                            String partial = parser.parsePartial(recognizer.getPartialResult());
+                            if (!partial.equals(lastLiveCaption)) {
+                                lastLiveCaption = partial;
+                                callback.onLiveCaption(partial);
+                            }
+                        }
+                    }
                 }
                 
                 processedBytes += bytesRead;
-                int currentProgress = (int) (20 + (processedBytes * 75 / totalBytes));
-                if (currentProgress > lastReportedProgress) {
-                    lastReportedProgress = currentProgress;
-                    callback.onProgressUpdate(currentProgress);
+                if (totalBytes > 0) {
+                    int currentProgress = (int) (progressStart + Math.min(processedBytes, totalBytes) * progressSpan / totalBytes);
+                    if (currentProgress > lastReportedProgress) {
+                        lastReportedProgress = currentProgress;
+                        reportProgress(job, callback, currentProgress);
+                    }
                 }
             }
 
+            if (vad != null) {
+                int tailLength = vad.flush();
+                if (tailLength > 0 && recognizer.acceptWaveForm(vad.getOutput(), tailLength)) {
+                    processRecognitionResult(parser, recognizer.getResult(), vad, offsetMs, timeline, subtitles);
+                }
+            }
             String finalResult = recognizer.getFinalResult();
-            processRecognitionResult(finalResult, subtitles);
-            
-            fis.close();
+            processRecognitionResult(parser, finalResult, vad, offsetMs, timeline, subtitles);
+            deliverAppended(subtitles, delivered, callback);
+
+            if (vad != null) {
+                Log.d(TAG, "VAD skipped " + vad.getSkippedMs() + " ms of " + vad.getProcessedMs() + " ms");
+                callback.onSilenceSkipped(vad.getSkippedMs(), vad.getProcessedMs());
+            }
         } finally {
             if (recognizer != null) {
                 recognizer.close();
             }
         }
-        
-        return subtitles;
     }
 
-    private void processRecognitionResult(String result, List<SubtitleEntry> subtitles) {
+    private void saveCheckpoint(TranscriptionCheckpoint checkpoint, WordTimeline timeline, int resumeMs) {
         try {
-            JSONObject jsonResult = new JSONObject(result);
-            JSONArray wordsArray = jsonResult.getJSONArray("result");
-            
-            StringBuilder currentSubtitle = new StringBuilder();
-            double startTime = 0;
-            double endTime = 0;
-            
-            for (int i = 0; i < wordsArray.length(); i++) {
-                JSONObject wordObj = wordsArray.getJSONObject(i);
-                String word = wordObj.getString("word");
-                double wordStart = wordObj.getDouble("start");
-                double wordEnd = wordObj.getDouble("end");
-                
-                if (currentSubtitle.length() == 0) {
-                    startTime = wordStart;
-                }
-                
-                if (currentSubtitle.length() + word.length() + 1 > MAX_SUBTITLE_LENGTH) {
-                    subtitles.add(new SubtitleEntry(subtitles.size() + 1,
-                        formatTime((long)(startTime * 1000)),
-                        formatTime((long)(endTime * 1000)),
-                        currentSubtitle.toString().trim()));
-
-                    currentSubtitle = new StringBuilder(word);
-                    startTime = wordStart;
-                } else {
-                    if (currentSubtitle.length() > 0) {
-                        currentSubtitle.append(" ");
-                    }
-                    currentSubtitle.append(word);
-                }
-                
-                endTime = wordEnd;
+            checkpoint.append(timeline, resumeMs);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing checkpoint", e);
+        }
+    }
+
+    private int deliverAppended(List<SubtitleEntry> subtitles, int delivered, SubtitleGenerationCallback callback) {
+        int size = subtitles.size();
+        if (size > delivered) {
+            callback.onSubtitlesAppended(delivered, new ArrayList<>(subtitles.subList(delivered, size)));
+        }
+        return size;
+    }
+
+    private void processRecognitionResult(VoskResultParser parser, String result, VoiceActivityDetector vad,
+                                          int offsetMs, WordTimeline timeline, List<SubtitleEntry> subtitles) {
+        int firstWord = timeline.size();
+        parser.parseWords(result, timeline);
+        if (vad != null) {
+            for (int i = firstWord; i < timeline.size(); i++) {
+                timeline.setTimes(i,
+                        (int) (vad.toSourceSeconds(timeline.getStartMs(i) / 1000.0) * 1000),
+                        (int) (vad.toSourceSeconds(timeline.getEndMs(i) / 1000.0) * 1000));
+            }
+        }
+        if (offsetMs > 0) {
+            for (int i = firstWord; i < timeline.size(); i++) {
+                timeline.setTimes(i, timeline.getStartMs(i) + offsetMs, timeline.getEndMs(i) + offsetMs);
             }
+        }
+        timeline.endUtterance();
+        appendSegments(timeline, firstWord, timeline.size(), subtitles);
+    }
+
+    private void appendSegments(WordTimeline timeline, int fromWord, int toWord, List<SubtitleEntry> subtitles) {
+        StringBuilder currentSubtitle = new StringBuilder();
+        int startTime = 0;
+        int endTime = 0;
+        int segmentStart = fromWord;
 
-            if (currentSubtitle.length() > 0) {
-                subtitles.add(new SubtitleEntry(subtitles.size() + 1,
-                    formatTime((long)(startTime * 1000)),
-                    formatTime((long)(endTime * 1000)),
-                    currentSubtitle.toString().trim()));
+        for (int i = fromWord; i < toWord; i++) {
+            int wordLength = timeline.getWordLength(i);
+
+            if (currentSubtitle.length() == 0) {
+                startTime = timeline.getStartMs(i);
+                segmentStart = i;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing recognition result", e);
+
+            if (currentSubtitle.length() + wordLength + 1 > MAX_SUBTITLE_LENGTH) {
+                subtitles.add(new SubtitleEntry(subtitles.size() + 1, startTime, endTime,
+                    currentSubtitle.toString().trim(), segmentStart, i - segmentStart));
+
+                currentSubtitle.setLength(0);
+                timeline.appendWord(i, currentSubtitle);
+                startTime = timeline.getStartMs(i);
+                segmentStart = i;
+            } else {
+                if (currentSubtitle.length() > 0) {
+                    currentSubtitle.append(" ");
+                }
+                timeline.appendWord(i, currentSubtitle);
+            }
+
+            endTime = timeline.getEndMs(i);
+        }
+
+        if (currentSubtitle.length() > 0) {
+            subtitles.add(new SubtitleEntry(subtitles.size() + 1, startTime, endTime,
+                currentSubtitle.toString().trim(), segmentStart, toWord - segmentStart));
         }
     }
 
+    public WordTimeline getWordTimeline() {
+        return wordTimeline;
+    }
+
+    /** Replaces the word timings that cue word ranges refer to, e.g. after importing a transcript. */
+    public void setWordTimeline(WordTimeline wordTimeline) {
+        this.wordTimeline = wordTimeline;
+    }
+
 
     private List<String> splitSubtitle(String text) {
         List<String> result = new ArrayList<>();
@@ -260,98 +701,105 @@ public class SubtitleGenerator {
         return result;
     }
 
-    public void saveSubtitlesToFile(List<SubtitleEntry> entries, String format, Uri videoUri, SubtitleSaveCallback callback) {
-        executorService.execute(() -> {
+    public JobHandle saveSubtitlesToFile(List<SubtitleEntry> entries, String format, Uri videoUri, SubtitleSaveCallback callback) {
+        return scheduler.submit(TaskScheduler.Pool.IO, TaskScheduler.PRIORITY_HIGH, "save", job -> {
             try {
                 String videoName = getVideoNameFromUri(videoUri);
                 String baseName = videoName + "_subtitles";
-                String uniqueFileName = getUniqueFileName(ApplicationPath.applicationPath(context), baseName, format.toLowerCase());
+                SubtitleWriter writer = SubtitleWriter.forFormat(format);
+                String uniqueFileName = getUniqueFileName(ApplicationPath.applicationPath(context), baseName, writer.getExtension());
                 
                 File subtitleFile = new File(ApplicationPath.applicationPath(context), uniqueFileName);
-                FileOutputStream fos = new FileOutputStream(subtitleFile);
-
-                if (format.equalsIgnoreCase("srt")) {
-                    writeSrtSubtitles(entries, fos);
-                } else if (format.equalsIgnoreCase("vtt")) {
-                    writeVttSubtitles(entries, fos);
-                } else {
-                    throw new IllegalArgumentException("Unsupported subtitle format: " + format);
+                try (FileOutputStream fos = new FileOutputStream(subtitleFile)) {
+                    writer.write(entries, wordTimeline, fos);
                 }
-
-                fos.close();
+                saveTranscript(entries, subtitleFile);
                 callback.onSubtitlesSaved(subtitleFile.getAbsolutePath());
-            } catch (IOException e) {
+            } catch (IOException | IllegalArgumentException e) {
                 callback.onError("Error saving subtitles: " + e.getMessage());
             }
         });
     }
 
-    private void writeSrtSubtitles(List<SubtitleEntry> subtitles, FileOutputStream fos) throws IOException {
-        try (Writer writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8)) {
-            for (SubtitleEntry entry : subtitles) {
-                writer.write(String.format("%d\n%s --> %s\n%s\n\n",
-                        entry.getNumber(),
-                        entry.getStartTime(),
-                        entry.getEndTime(),
-                        entry.getText()));
-            }
+    /**
+     * Writes the cues and word timings next to {@code subtitleFile} as a {@link TranscriptFile},
+     * so they can be imported again without losing the words. Cues without word ranges, e.g. from
+     * a plain SRT import, are written without words. Failures only skip the sidecar.
+     */
+    private void saveTranscript(List<SubtitleEntry> entries, File subtitleFile) {
+        String name = subtitleFile.getName();
+        int dot = name.lastIndexOf('.');
+        File transcriptFile = new File(subtitleFile.getParentFile(),
+                (dot > 0 ? name.substring(0, dot) : name) + "." + TranscriptFile.EXTENSION);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(transcriptFile))) {
+            TranscriptFile.write(entries, hasWordRanges(entries) ? wordTimeline : null, out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving transcript", e);
+            transcriptFile.delete();
         }
     }
 
-    private void writeVttSubtitles(List<SubtitleEntry> entries, FileOutputStream fos) throws IOException {
-        fos.write("WEBVTT\n\n".getBytes());
+    private static boolean hasWordRanges(List<SubtitleEntry> entries) {
         for (SubtitleEntry entry : entries) {
-            String vttEntry = String.format("%s --> %s\n%s\n\n",
-                    formatTimeVtt(entry.getStartTime()),
-                    formatTimeVtt(entry.getEndTime()),
-                    entry.getText());
-            fos.write(vttEntry.getBytes());
+            if (entry.getWordCount() > 0) {
+                return true;
+            }
         }
-    }
-
-    private String formatTimeVtt(String time) {
-        return time.replace(',', '.');
-    }
-
-    private String formatTime(long timeMs) {
-        long hours = timeMs / 3600000;
-        long minutes = (timeMs % 3600000) / 60000;
-        long seconds = (timeMs % 60000) / 1000;
-        long milliseconds = timeMs % 1000;
-
-        return String.format("%02d:%02d:%02d,%03d", hours, minutes, seconds, milliseconds);
+        return false;
     }
 
     public static class SubtitleEntry {
+        private static final AtomicLong NEXT_ID = new AtomicLong();
+
+        private final long id = NEXT_ID.getAndIncrement();
         private int number;
-        private String startTime;
-        private String endTime;
+        private int startMs;
+        private int endMs;
         private String text;
+        private int firstWord;
+        private int wordCount;
+
+        public SubtitleEntry(int number, int startMs, int endMs, String text) {
+            this(number, startMs, endMs, text, -1, 0);
+        }
 
-        public SubtitleEntry(int number, String startTime, String endTime, String text) {
+        public SubtitleEntry(int number, int startMs, int endMs, String text, int firstWord, int wordCount) {
             this.number = number;
-            this.startTime = startTime;
-            this.endTime = endTime;
+            this.startMs = startMs;
+            this.endMs = endMs;
             this.text = text;
+            this.firstWord = firstWord;
+            this.wordCount = wordCount;
         }
 
+        /** Identity of the cue for the lifetime of the process; unlike the number it survives edits. */
+        public long getId() { return id; }
+        /** Number assigned when the cue was produced; lists and writers number cues by position. */
         public int getNumber() { return number; }
-        public String getStartTime() { return startTime; }
-        public String getEndTime() { return endTime; }
+        public int getStartMs() { return startMs; }
+        public int getEndMs() { return endMs; }
         public String getText() { return text; }
+        public int getFirstWord() { return firstWord; }
+        public int getWordCount() { return wordCount; }
 
         public void setNumber(int number) { this.number = number; }
         public void setText(String text) { this.text = text; }
-        public void setEndTime(String endTime) {
-            this.endTime = endTime;
+        public void setEndMs(int endMs) {
+            this.endMs = endMs;
+        }
+        public void setWordRange(int firstWord, int wordCount) {
+            this.firstWord = firstWord;
+            this.wordCount = wordCount;
         }
     }
 
     public interface SubtitleGenerationCallback {
-        void onPartialSubtitlesGenerated(List<SubtitleEntry> partialSubtitles);
+        void onSubtitlesAppended(int fromIndex, List<SubtitleEntry> appended);
         void onSubtitlesGenerated(List<SubtitleEntry> subtitleEntries);
         void onError(String errorMessage);
         void onProgressUpdate(int progress);
+        void onSilenceSkipped(long skippedMs, long totalMs);
+        void onLiveCaption(String text);
         void onCancelled();
     }
 
@@ -399,16 +847,23 @@ public class SubtitleGenerator {
         }
     }
 
-    public void exportVideoWithSubtitles(Uri videoUri, List<SubtitleEntry> subtitles, boolean burnSubtitles, String fontName, VideoExportCallback callback) {
-        executorService.execute(() -> {
+    public JobHandle exportVideoWithSubtitles(Uri videoUri, List<SubtitleEntry> subtitles, boolean burnSubtitles, String fontName, VideoExportCallback callback) {
+        String code = languageCode;
+        JobHandle handle = scheduler.submit(TaskScheduler.Pool.EXPORT, TaskScheduler.PRIORITY_NORMAL, "export", job -> {
             File srtFile = null;
+            File outputFile = null;
+            boolean exported = false;
             try {
+                if (job.isCancelled()) {
+                    callback.onCancelled();
+                    return;
+                }
                 setupFontDirectories();
 
-                srtFile = new File(context.getCacheDir(), "temp_subtitles.srt");
-                FileOutputStream fos = new FileOutputStream(srtFile);
-                writeSrtSubtitles(subtitles, fos);
-                fos.close();
+                srtFile = File.createTempFile("temp_subtitles", ".srt", context.getCacheDir());
+                try (FileOutputStream fos = new FileOutputStream(srtFile)) {
+                    SubtitleWriter.forFormat("srt").write(subtitles, null, fos);
+                }
 
 //                logSrtFileContents(srtFile);
 
@@ -416,12 +871,35 @@ public class SubtitleGenerator {
                 String baseName = videoName + (burnSubtitles ? "_hard_subtitles" : "_soft_subtitles");
                 String uniqueFileName = getUniqueFileName(ApplicationPath.applicationPath(context), baseName, "mp4");
                 Log.d(TAG,"File Name:" + uniqueFileName);
-                File outputFile = new File(ApplicationPath.applicationPath(context), uniqueFileName);
+                outputFile = new File(ApplicationPath.applicationPath(context), uniqueFileName);
 
                 String inputPath = FFmpegKitConfig.getSafParameterForRead(context, videoUri);
                 String outputPath = outputFile.getAbsolutePath();
                 String subtitlePath = srtFile.getAbsolutePath();
 
+                double duration = probeDurationSeconds(videoUri);
+                ExportProgress progress = new ExportProgress(duration, (percent, fps, speed, etaMs) -> {
+                    job.setProgress(percent);
+                    callback.onProgressUpdate(percent);
+                    callback.onExportStats(fps, speed, etaMs);
+                });
+                File statsLog = new File(context.getFilesDir(), EXPORT_STATS_FILE);
+
+                if (burnSubtitles && duration > 0 && (segmentedBurnIn || smartRender)) {
+                    BurnInRenderer renderer = new BurnInRenderer(context, videoUri, fontName, job);
+                    renderer.setProgress(progress);
+                    String mode = "burn_smart";
+                    int cores = Runtime.getRuntime().availableProcessors();
+                    if (!smartRender || !renderer.renderSmart(subtitles, duration, cores, outputFile)) {
+                        mode = segmentedBurnIn ? "burn_segmented" : "burn";
+                        renderer.renderSegmented(subtitles, duration, segmentedBurnIn ? cores : 1, outputFile);
+                    }
+                    exported = true;
+                    progress.record(statsLog, mode, outputFile);
+                    callback.onVideoExported(outputPath);
+                    return;
+                }
+
                 String command;
                 if (burnSubtitles) {
 //                    command = String.format("-i %s -vf subtitles=%s:force_style='FontName=%s' -c:v mpeg4 -c:a copy %s",
@@ -434,16 +912,21 @@ public class SubtitleGenerator {
 //                    );
 
                 } else {
-                    command = String.format("-i %s -i %s -c copy -c:s mov_text -metadata:s:s:0 language=eng %s",
-                            inputPath, subtitlePath, outputPath);
+                    command = softMuxCommand(inputPath, Collections.singletonList(new SubtitleTrack(subtitles, code, null)),
+                            Collections.singletonList(srtFile), outputPath);
                 }
 
                 Log.d(TAG, "Executing FFmpeg command: " + command);
 
-                FFmpegSession session = FFmpegKit.execute(command);
+                FFmpegSession session = executeCancellable(command, job, progress.track(duration));
 
-                if (ReturnCode.isSuccess(session.getReturnCode())) {
+                if (ReturnCode.isSuccess(session.getReturnCode()) && !job.isCancelled()) {
+                    exported = true;
+                    progress.record(statsLog, burnSubtitles ? "burn" : "soft", outputFile);
                     callback.onVideoExported(outputPath);
+                } else if (job.isCancelled() || ReturnCode.isCancel(session.getReturnCode())) {
+                    Log.d(TAG, "Video export cancelled");
+                    callback.onCancelled();
                 } else {
                     String errorMessage = session.getOutput() + "\n" + session.getLogsAsString();
                     Log.e(TAG, "FFmpeg error: " + errorMessage);
@@ -451,20 +934,171 @@ public class SubtitleGenerator {
                 }
 
             } catch (IOException e) {
+                if (job.isCancelled()) {
+                    Log.d(TAG, "Video export cancelled");
+                    callback.onCancelled();
+                    return;
+                }
                 Log.e(TAG, "Error exporting video with subtitles", e);
                 callback.onError("Error exporting video: " + e.getMessage());
             } finally {
                 if (srtFile != null && srtFile.exists()) {
                     srtFile.delete();
                 }
+                if (!exported && outputFile != null && outputFile.exists()) {
+                    outputFile.delete();
+                }
+            }
+        });
+        exportJob = handle;
+        return handle;
+    }
+
+    /** One subtitle track of a soft-subtitle export. */
+    public static class SubtitleTrack {
+        private final List<SubtitleEntry> entries;
+        private final String languageCode;
+        private final String title;
+
+        public SubtitleTrack(List<SubtitleEntry> entries, String languageCode, String title) {
+            this.entries = entries;
+            this.languageCode = languageCode;
+            this.title = title;
+        }
+
+        public List<SubtitleEntry> getEntries() { return entries; }
+        public String getLanguageCode() { return languageCode; }
+        public String getTitle() { return title; }
+
+        /** The ISO 639-2 code MP4 language metadata expects, e.g. "hin" for "hi". */
+        public String getIso6392Code() {
+            if (languageCode == null || languageCode.isEmpty()) {
+                return "und";
+            }
+            if (languageCode.length() == 3) {
+                return languageCode.toLowerCase(Locale.ROOT);
+            }
+            try {
+                return new Locale(languageCode).getISO3Language();
+            } catch (MissingResourceException e) {
+                return "und";
+            }
+        }
+    }
+
+    private static String softMuxCommand(String inputPath, List<SubtitleTrack> tracks, List<File> srtFiles,
+                                         String outputPath) {
+        StringBuilder command = new StringBuilder("-y -i ").append(inputPath);
+        for (File srtFile : srtFiles) {
+            command.append(" -i ").append(srtFile.getAbsolutePath());
+        }
+        command.append(" -map 0:v? -map 0:a?");
+        for (int i = 0; i < tracks.size(); i++) {
+            command.append(" -map ").append(i + 1).append(":0");
+        }
+        command.append(" -c copy -c:s mov_text");
+        for (int i = 0; i < tracks.size(); i++) {
+            SubtitleTrack track = tracks.get(i);
+            command.append(" -metadata:s:s:").append(i).append(" language=").append(track.getIso6392Code());
+            if (track.getTitle() != null) {
+                command.append(" -metadata:s:s:").append(i).append(" title=\"")
+                        .append(track.getTitle().replace("\"", "")).append('"');
+            }
+            command.append(" -disposition:s:").append(i).append(i == 0 ? " default" : " 0");
+        }
+        return command.append(' ').append(outputPath).toString();
+    }
+
+    /**
+     * Muxes every track into one copy of the video in a single stream-copy pass. With a
+     * {@code sidecarFormat} of "srt" or "vtt", each track is also saved next to the video.
+     */
+    public JobHandle exportSoftSubtitleTracks(Uri videoUri, List<SubtitleTrack> tracks, String sidecarFormat,
+                                              VideoExportCallback callback) {
+        JobHandle handle = scheduler.submit(TaskScheduler.Pool.EXPORT, TaskScheduler.PRIORITY_NORMAL, "export", job -> {
+            List<File> srtFiles = new ArrayList<>();
+            File outputFile = null;
+            boolean exported = false;
+            try {
+                if (job.isCancelled()) {
+                    callback.onCancelled();
+                    return;
+                }
+                SubtitleWriter srtWriter = SubtitleWriter.forFormat("srt");
+                for (SubtitleTrack track : tracks) {
+                    File srtFile = File.createTempFile("temp_subtitles", ".srt", context.getCacheDir());
+                    srtFiles.add(srtFile);
+                    try (FileOutputStream fos = new FileOutputStream(srtFile)) {
+                        srtWriter.write(track.getEntries(), null, fos);
+                    }
+                }
+
+                String outputDir = ApplicationPath.applicationPath(context);
+                String videoName = getVideoNameFromUri(videoUri);
+                outputFile = new File(outputDir, getUniqueFileName(outputDir, videoName + "_soft_subtitles", "mp4"));
+                String outputPath = outputFile.getAbsolutePath();
+                String command = softMuxCommand(FFmpegKitConfig.getSafParameterForRead(context, videoUri), tracks,
+                        srtFiles, outputPath);
+                Log.d(TAG, "Executing FFmpeg command: " + command);
+
+                double duration = probeDurationSeconds(videoUri);
+                ExportProgress progress = new ExportProgress(duration, (percent, fps, speed, etaMs) -> {
+                    job.setProgress(percent);
+                    callback.onProgressUpdate(percent);
+                    callback.onExportStats(fps, speed, etaMs);
+                });
+                FFmpegSession session = executeCancellable(command, job, progress.track(duration));
+
+                if (job.isCancelled() || ReturnCode.isCancel(session.getReturnCode())) {
+                    Log.d(TAG, "Video export cancelled");
+                    callback.onCancelled();
+                    return;
+                } else if (!ReturnCode.isSuccess(session.getReturnCode())) {
+                    String errorMessage = session.getOutput() + "\n" + session.getLogsAsString();
+                    Log.e(TAG, "FFmpeg error: " + errorMessage);
+                    callback.onError("FFmpeg command failed: " + errorMessage);
+                    return;
+                }
+                exported = true;
+                progress.record(new File(context.getFilesDir(), EXPORT_STATS_FILE), "soft_tracks", outputFile);
+
+                if (sidecarFormat != null) {
+                    SubtitleWriter sidecarWriter = SubtitleWriter.forFormat(sidecarFormat);
+                    for (SubtitleTrack track : tracks) {
+                        String sidecarName = getUniqueFileName(outputDir,
+                                videoName + "_" + track.getIso6392Code(), sidecarWriter.getExtension());
+                        try (FileOutputStream fos = new FileOutputStream(new File(outputDir, sidecarName))) {
+                            sidecarWriter.write(track.getEntries(), null, fos);
+                        }
+                    }
+                }
+                callback.onVideoExported(outputPath);
+            } catch (IOException e) {
+                if (job.isCancelled()) {
+                    callback.onCancelled();
+                    return;
+                }
+                Log.e(TAG, "Error exporting video with subtitle tracks", e);
+                callback.onError("Error exporting video: " + e.getMessage());
+            } finally {
+                for (File srtFile : srtFiles) {
+                    srtFile.delete();
+                }
+                if (!exported && outputFile != null && outputFile.exists()) {
+                    outputFile.delete();
+                }
             }
         });
+        exportJob = handle;
+        return handle;
     }
 
     public interface VideoExportCallback {
         void onVideoExported(String filePath);
         void onError(String errorMessage);
         void onProgressUpdate(int progress);
+        void onExportStats(float fps, double speed, long etaMs);
+        void onCancelled();
     }
 
     private void logSrtFileContents(File srtFile) {
@@ -0,0 +1,511 @@
+package com.serhat.autosub;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pull parser for SRT, WebVTT and ASS/SSA files. Text is decoded through a fixed buffer and
+ * parsed one line at a time, so only the cues themselves are kept in memory, never the raw file.
+ * Blocks without a valid timing line are skipped instead of failing the whole import, and a cue
+ * that runs into the next one without a blank line is split at the next timing line.
+ */
+public class SubtitleReader implements Closeable {
+    private static final String TAG = "SubtitleReader";
+    private static final int IMPORT_BATCH_SIZE = 200;
+
+    public enum Format {SRT, VTT, ASS}
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean skipLineFeed;
+    private boolean pushedBack;
+    private final StringBuilder line = new StringBuilder(128);
+    private final StringBuilder text = new StringBuilder(256);
+    private final Format format;
+    private int count;
+
+    private int timingStart;
+    private int timingEnd;
+
+    private boolean inEvents;
+    private int assStartField = 1;
+    private int assEndField = 2;
+    private int assFieldCount = 10;
+
+    public SubtitleReader(InputStream in) throws IOException {
+        BufferedInputStream stream = new BufferedInputStream(in);
+        reader = new InputStreamReader(stream, detectCharset(stream));
+        format = detectFormat();
+    }
+
+    /** Consumes a byte order mark, if any, and returns the charset it announces (UTF-8 otherwise). */
+    private static Charset detectCharset(BufferedInputStream in) throws IOException {
+        in.mark(3);
+        int b0 = in.read();
+        int b1 = in.read();
+        int b2 = in.read();
+        in.reset();
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            in.skip(3);
+            return StandardCharsets.UTF_8;
+        } else if (b0 == 0xFE && b1 == 0xFF) {
+            in.skip(2);
+            return StandardCharsets.UTF_16BE;
+        } else if (b0 == 0xFF && b1 == 0xFE) {
+            in.skip(2);
+            return StandardCharsets.UTF_16LE;
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private Format detectFormat() throws IOException {
+        while (readLine()) {
+            int start = skipWhitespace(line, 0, line.length());
+            if (start == line.length()) {
+                continue;
+            }
+            pushedBack = true;
+            if (startsWith(line, start, "WEBVTT")) {
+                return Format.VTT;
+            } else if (line.charAt(start) == '[') {
+                return Format.ASS;
+            }
+            return Format.SRT;
+        }
+        return Format.SRT;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Appends up to {@code max} further cues to {@code out}, numbered on from the previous call,
+     * and returns how many were added; zero means the end of the file.
+     */
+    public int read(List<SubtitleGenerator.SubtitleEntry> out, int max) throws IOException {
+        int added = 0;
+        while (added < max) {
+            SubtitleGenerator.SubtitleEntry entry = format == Format.ASS ? readAssCue() : readBlockCue();
+            if (entry == null) {
+                break;
+            }
+            out.add(entry);
+            added++;
+        }
+        return added;
+    }
+
+    private SubtitleGenerator.SubtitleEntry readBlockCue() throws IOException {
+        while (true) {
+            // Index lines, VTT identifiers, headers and NOTE/STYLE blocks all lack a timing line.
+            do {
+                if (!readLine()) {
+                    return null;
+                }
+            } while (!parseTiming(line));
+            int startMs = timingStart;
+            int endMs = timingEnd;
+
+            text.setLength(0);
+            int lastLineStart = 0;
+            while (readLine() && !isBlank(line)) {
+                if (parseTiming(line)) {
+                    pushedBack = true;
+                    if (isDigits(text, lastLineStart, text.length())) {
+                        text.setLength(Math.max(0, lastLineStart - 1));
+                    }
+                    break;
+                }
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                lastLineStart = text.length();
+                text.append(line);
+            }
+            if (text.length() > 0) {
+                return new SubtitleGenerator.SubtitleEntry(++count, startMs, Math.max(startMs, endMs),
+                        text.toString());
+            }
+        }
+    }
+
+    /** Parses {@code start --> end [settings]} into {@link #timingStart} and {@link #timingEnd}. */
+    private boolean parseTiming(CharSequence s) {
+        int arrow = indexOf(s, "-->");
+        if (arrow < 0) {
+            return false;
+        }
+        int endFrom = skipWhitespace(s, arrow + 3, s.length());
+        int endTo = endFrom;
+        while (endTo < s.length() && !Character.isWhitespace(s.charAt(endTo))) {
+            endTo++;
+        }
+        long start = parseTime(s, 0, arrow);
+        long end = parseTime(s, endFrom, endTo);
+        if (start < 0 || end < 0 || start > Integer.MAX_VALUE || end > Integer.MAX_VALUE) {
+            return false;
+        }
+        timingStart = (int) start;
+        timingEnd = (int) end;
+        return true;
+    }
+
+    /**
+     * Parses {@code [H:]MM:SS[.,]fff} with any number of hour digits and fraction digits, as SRT,
+     * VTT and ASS all write slightly different variants. Returns -1 if the range is not a time.
+     */
+    static long parseTime(CharSequence s, int from, int to) {
+        from = skipWhitespace(s, from, to);
+        while (to > from && Character.isWhitespace(s.charAt(to - 1))) {
+            to--;
+        }
+        long[] fields = new long[3];
+        int fieldCount = 0;
+        boolean digits = false;
+        long value = 0;
+        int i = from;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits = true;
+            } else if (c == ':' && digits && fieldCount < 2) {
+                fields[fieldCount++] = value;
+                value = 0;
+                digits = false;
+            } else if (c == '.' || c == ',') {
+                break;
+            } else {
+                return -1;
+            }
+        }
+        if (!digits || fieldCount == 0) {
+            return -1;
+        }
+        fields[fieldCount++] = value;
+        long millis = 0;
+        int scale = 100;
+        for (i++; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            millis += (c - '0') * scale;
+            scale /= 10;
+        }
+        long hours = fieldCount == 3 ? fields[0] : 0;
+        long minutes = fields[fieldCount - 2];
+        long seconds = fields[fieldCount - 1];
+        return hours * 3600000L + minutes * 60000L + seconds * 1000L + millis;
+    }
+
+    private SubtitleGenerator.SubtitleEntry readAssCue() throws IOException {
+        while (readLine()) {
+            int start = skipWhitespace(line, 0, line.length());
+            if (start == line.length()) {
+                continue;
+            }
+            if (line.charAt(start) == '[') {
+                inEvents = startsWithIgnoreCase(line, start, "[Events]");
+            } else if (!inEvents) {
+                continue;
+            } else if (startsWith(line, start, "Format:")) {
+                parseAssFormat(start + "Format:".length());
+            } else if (startsWith(line, start, "Dialogue:")) {
+                SubtitleGenerator.SubtitleEntry entry = parseAssDialogue(start + "Dialogue:".length());
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void parseAssFormat(int from) {
+        int field = 0;
+        int fieldStart = from;
+        for (int i = from; i <= line.length(); i++) {
+            if (i == line.length() || line.charAt(i) == ',') {
+                int s = skipWhitespace(line, fieldStart, i);
+                if (regionEquals(line, s, i, "Start")) {
+                    assStartField = field;
+                } else if (regionEquals(line, s, i, "End")) {
+                    assEndField = field;
+                }
+                field++;
+                fieldStart = i + 1;
+            }
+        }
+        assFieldCount = field;
+    }
+
+    /** Splits on the first {@code fieldCount - 1} commas only; the last field is Text, which may contain commas. */
+    private SubtitleGenerator.SubtitleEntry parseAssDialogue(int from) {
+        long start = -1;
+        long end = -1;
+        int field = 0;
+        int fieldStart = from;
+        int i = from;
+        for (; i < line.length() && field < assFieldCount - 1; i++) {
+            if (line.charAt(i) == ',') {
+                if (field == assStartField) {
+                    start = parseTime(line, fieldStart, i);
+                } else if (field == assEndField) {
+                    end = parseTime(line, fieldStart, i);
+                }
+                field++;
+                fieldStart = i + 1;
+            }
+        }
+        if (field < assFieldCount - 1 || start < 0 || end < 0 || end > Integer.MAX_VALUE) {
+            return null;
+        }
+        text.setLength(0);
+        for (; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '{') {
+                int close = indexOf(line, '}', i + 1);
+                if (close >= 0) {
+                    i = close;
+                    continue;
+                }
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(i + 1);
+                if (next == 'N' || next == 'n') {
+                    text.append('\n');
+                    i++;
+                    continue;
+                } else if (next == 'h') {
+                    text.append(' ');
+                    i++;
+                    continue;
+                } else if (next == '{' || next == '}') {
+                    text.append(next);
+                    i++;
+                    continue;
+                }
+            }
+            text.append(c);
+        }
+        if (isBlank(text)) {
+            return null;
+        }
+        return new SubtitleGenerator.SubtitleEntry(++count, (int) start, (int) Math.max(start, end),
+                text.toString());
+    }
+
+    /** Reads the next line into {@link #line}, treating CRLF, LF and lone CR as terminators. */
+    private boolean readLine() throws IOException {
+        if (pushedBack) {
+            pushedBack = false;
+            return true;
+        }
+        line.setLength(0);
+        boolean any = false;
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return any;
+                }
+            }
+            char c = buffer[position++];
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            any = true;
+            if (c == '\n') {
+                return true;
+            } else if (c == '\r') {
+                skipLineFeed = true;
+                return true;
+            } else if (c != '\uFEFF') {
+                line.append(c);
+            }
+        }
+    }
+
+    private static int skipWhitespace(CharSequence s, int from, int to) {
+        while (from < to && Character.isWhitespace(s.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean isBlank(CharSequence s) {
+        return skipWhitespace(s, 0, s.length()) == s.length();
+    }
+
+    private static boolean isDigits(CharSequence s, int from, int to) {
+        from = skipWhitespace(s, from, to);
+        if (from == to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if ((c < '0' || c > '9') && !Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(CharSequence s, int from, String prefix) {
+        return s.length() - from >= prefix.length() && regionEquals(s, from, from + prefix.length(), prefix);
+    }
+
+    private static boolean startsWithIgnoreCase(CharSequence s, int from, String prefix) {
+        if (s.length() - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(s.charAt(from + i)) != Character.toLowerCase(prefix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEquals(CharSequence s, int from, int to, String value) {
+        while (to > from && Character.isWhitespace(s.charAt(to - 1))) {
+            to--;
+        }
+        if (to - from != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (s.charAt(from + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence s, String needle) {
+        for (int i = 0; i + needle.length() <= s.length(); i++) {
+            if (regionEquals(s, i, i + needle.length(), needle)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int i = from; i < s.length(); i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    public interface ImportCallback {
+        /** Called before any cue when the file is a {@link TranscriptFile} carrying word timings. */
+        void onWordsImported(WordTimeline words);
+        void onSubtitlesAppended(int fromIndex, List<SubtitleGenerator.SubtitleEntry> appended);
+        void onSubtitlesImported(int count);
+        void onError(String errorMessage);
+    }
+
+    /** Parses {@code uri} on the IO pool, delivering cues in batches as they are read. */
+    public static JobHandle importAsync(Context context, Uri uri, ImportCallback callback) {
+        return App.getTaskScheduler(context).submit(TaskScheduler.Pool.IO, TaskScheduler.PRIORITY_HIGH, "import",
+                job -> {
+                    try {
+                        if (importTranscript(context, uri, job, callback)) {
+                            return;
+                        }
+                    } catch (IOException | SecurityException e) {
+                        Log.e(TAG, "Error importing transcript", e);
+                        callback.onError(e.getMessage());
+                        return;
+                    }
+                    try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+                        if (in == null) {
+                            callback.onError("Cannot open " + uri);
+                            return;
+                        }
+                        SubtitleReader reader = new SubtitleReader(in);
+                        int total = 0;
+                        List<SubtitleGenerator.SubtitleEntry> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                        while (!job.isCancelled() && reader.read(batch, IMPORT_BATCH_SIZE) > 0) {
+                            callback.onSubtitlesAppended(total, batch);
+                            total += batch.size();
+                            batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                        }
+                        Log.d(TAG, "Imported " + total + " " + reader.getFormat() + " cues from " + uri);
+                        if (!job.isCancelled()) {
+                            callback.onSubtitlesImported(total);
+                        }
+                    } catch (IOException | SecurityException e) {
+                        Log.e(TAG, "Error importing subtitles", e);
+                        callback.onError(e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Imports {@code uri} if it starts with the {@link TranscriptFile} magic, mapping it instead
+     * of parsing it; returns false for any other file.
+     */
+    private static boolean importTranscript(Context context, Uri uri, JobHandle job, ImportCallback callback)
+            throws IOException {
+        try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(uri, "r")) {
+            if (pfd == null) {
+                return false;
+            }
+            try (FileInputStream in = new FileInputStream(pfd.getFileDescriptor())) {
+                FileChannel channel = in.getChannel();
+                ByteBuffer magic = ByteBuffer.allocate(4);
+                while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+                    // Keep reading; short reads are allowed.
+                }
+                if (magic.hasRemaining() || magic.getInt(0) != TranscriptFile.MAGIC) {
+                    return false;
+                }
+                TranscriptFile transcript = TranscriptFile.open(channel);
+                WordTimeline words = transcript.readTimeline();
+                List<SubtitleGenerator.SubtitleEntry> cues = transcript.readCues();
+                callback.onWordsImported(words);
+                for (int from = 0; from < cues.size() && !job.isCancelled(); from += IMPORT_BATCH_SIZE) {
+                    int to = Math.min(cues.size(), from + IMPORT_BATCH_SIZE);
+                    callback.onSubtitlesAppended(from, new ArrayList<>(cues.subList(from, to)));
+                }
+                Log.d(TAG, "Imported " + cues.size() + " cues and " + words.size() + " words from " + uri);
+                if (!job.isCancelled()) {
+                    callback.onSubtitlesImported(cues.size());
+                }
+                return true;
+            }
+        }
+    }
+}
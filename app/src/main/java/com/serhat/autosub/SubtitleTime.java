@@ -0,0 +1,60 @@
+package com.serhat.autosub;
+
+public final class SubtitleTime {
+
+    private SubtitleTime() {
+    }
+
+    public static String formatSrt(long timeMs) {
+        return format(timeMs, ',');
+    }
+
+    public static String formatVtt(long timeMs) {
+        return format(timeMs, '.');
+    }
+
+    private static String format(long timeMs, char millisSeparator) {
+        char[] out = new char[12];
+        write(timeMs, millisSeparator, out, 0);
+        return new String(out);
+    }
+
+    /** Writes {@code HH:MM:SS<sep>mmm} into {@code out} at {@code offset} and returns the new offset. */
+    public static int write(long timeMs, char millisSeparator, char[] out, int offset) {
+        long hours = timeMs / 3600000;
+        int minutes = (int) ((timeMs % 3600000) / 60000);
+        int seconds = (int) ((timeMs % 60000) / 1000);
+        int milliseconds = (int) (timeMs % 1000);
+        if (hours > 99) {
+            hours = 99;
+        }
+        out[offset++] = (char) ('0' + hours / 10);
+        out[offset++] = (char) ('0' + hours % 10);
+        out[offset++] = ':';
+        out[offset++] = (char) ('0' + minutes / 10);
+        out[offset++] = (char) ('0' + minutes % 10);
+        out[offset++] = ':';
+        out[offset++] = (char) ('0' + seconds / 10);
+        out[offset++] = (char) ('0' + seconds % 10);
+        out[offset++] = millisSeparator;
+        out[offset++] = (char) ('0' + milliseconds / 100);
+        out[offset++] = (char) ('0' + (milliseconds / 10) % 10);
+        out[offset++] = (char) ('0' + milliseconds % 10);
+        return offset;
+    }
+
+    /** Parses {@code HH:MM:SS,mmm} (or {@code .mmm}) without regex or intermediate strings. */
+    public static long parse(CharSequence time) {
+        long[] fields = new long[4];
+        int field = 0;
+        for (int i = 0; i < time.length() && field < 4; i++) {
+            char c = time.charAt(i);
+            if (c >= '0' && c <= '9') {
+                fields[field] = fields[field] * 10 + (c - '0');
+            } else if (c == ':' || c == ',' || c == '.') {
+                field++;
+            }
+        }
+        return fields[0] * 3600000L + fields[1] * 60000L + fields[2] * 1000L + fields[3];
+    }
+}
@@ -0,0 +1,41 @@
+package com.serhat.autosub;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Serializes cues into one sidecar format. Implementations keep a reusable buffer, so a writer
+ * instance must not be shared between threads; {@link #forFormat} returns a fresh one per call.
+ */
+public interface SubtitleWriter {
+
+    String[] FORMATS = {"srt", "vtt", "ass", "ttml", "json"};
+
+    String getExtension();
+
+    /**
+     * Writes {@code entries} to {@code out} as UTF-8 and flushes it, leaving the stream open.
+     * {@code words} may be null; only formats carrying word timings read it.
+     */
+    void write(List<SubtitleGenerator.SubtitleEntry> entries, WordTimeline words, OutputStream out)
+            throws IOException;
+
+    static SubtitleWriter forFormat(String format) {
+        switch (format.toLowerCase(Locale.ROOT)) {
+            case "srt":
+                return new SubtitleWriters.Srt();
+            case "vtt":
+                return new SubtitleWriters.Vtt();
+            case "ass":
+                return new SubtitleWriters.Ass();
+            case "ttml":
+                return new SubtitleWriters.Ttml();
+            case "json":
+                return new SubtitleWriters.WordJson();
+            default:
+                throw new IllegalArgumentException("Unsupported subtitle format: " + format);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.serhat.autosub;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * {@link SubtitleWriter} implementations. Timestamps, numbers and escaped text are formatted
+ * straight into one reusable char buffer that is handed to the UTF-8 encoder in large blocks, so
+ * serializing a cue allocates nothing beyond what the caller already holds.
+ */
+final class SubtitleWriters {
+
+    private SubtitleWriters() {
+    }
+
+    abstract static class Buffered implements SubtitleWriter {
+        private static final int BUFFER_SIZE = 16 * 1024;
+
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position;
+        private Writer out;
+
+        @Override
+        public final void write(List<SubtitleGenerator.SubtitleEntry> entries, WordTimeline words,
+                                OutputStream stream) throws IOException {
+            out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            position = 0;
+            try {
+                writeHeader();
+                int index = 0;
+                for (SubtitleGenerator.SubtitleEntry entry : entries) {
+                    writeEntry(index++, entry, words);
+                }
+                writeFooter();
+                flushBuffer();
+                out.flush();
+            } finally {
+                out = null;
+            }
+        }
+
+        void writeHeader() throws IOException {
+        }
+
+        abstract void writeEntry(int index, SubtitleGenerator.SubtitleEntry entry, WordTimeline words)
+                throws IOException;
+
+        void writeFooter() throws IOException {
+        }
+
+        final void ensure(int count) throws IOException {
+            if (position + count > buffer.length) {
+                flushBuffer();
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            if (position > 0) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+
+        final void append(char c) throws IOException {
+            ensure(1);
+            buffer[position++] = c;
+        }
+
+        final void append(String s) throws IOException {
+            int length = s.length();
+            int copied = 0;
+            while (copied < length) {
+                if (position == buffer.length) {
+                    flushBuffer();
+                }
+                int chunk = Math.min(length - copied, buffer.length - position);
+                s.getChars(copied, copied + chunk, buffer, position);
+                position += chunk;
+                copied += chunk;
+            }
+        }
+
+        final void appendInt(long value) throws IOException {
+            ensure(20);
+            if (value < 0) {
+                buffer[position++] = '-';
+                value = -value;
+            }
+            int start = position;
+            do {
+                buffer[position++] = (char) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            for (int i = start, j = position - 1; i < j; i++, j--) {
+                char tmp = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = tmp;
+            }
+        }
+
+        final void appendDigits(long value, int width) throws IOException {
+            ensure(width);
+            for (int i = position + width - 1; i >= position; i--) {
+                buffer[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+            position += width;
+        }
+
+        final void appendTime(long timeMs, char millisSeparator) throws IOException {
+            ensure(12);
+            position = SubtitleTime.write(timeMs, millisSeparator, buffer, position);
+        }
+
+        /** Appends {@code text} one char at a time through {@link #appendEscaped}. */
+        final void appendText(String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                appendEscaped(text.charAt(i));
+            }
+        }
+
+        void appendEscaped(char c) throws IOException {
+            append(c);
+        }
+    }
+
+    static final class Srt extends Buffered {
+        @Override
+        public String getExtension() {
+            return "srt";
+        }
+
+        @Override
+        void writeEntry(int index, SubtitleGenerator.SubtitleEntry entry, WordTimeline words) throws IOException {
+            appendInt(index + 1);
+            append('\n');
+            appendTime(entry.getStartMs(), ',');
+            append(" --> ");
+            appendTime(entry.getEndMs(), ',');
+            append('\n');
+            append(entry.getText());
+            append("\n\n");
+        }
+    }
+
+    static final class Vtt extends Buffered {
+        @Override
+        public String getExtension() {
+            return "vtt";
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            append("WEBVTT\n\n");
+        }
+
+        @Override
+        void writeEntry(int index, SubtitleGenerator.SubtitleEntry entry, WordTimeline words) throws IOException {
+            appendTime(entry.getStartMs(), '.');
+            append(" --> ");
+            appendTime(entry.getEndMs(), '.');
+            append('\n');
+            append(entry.getText());
+            append("\n\n");
+        }
+    }
+
+    /** Advanced SubStation Alpha with a single bottom-centred style, as libass renders by default. */
+    static final class Ass extends Buffered {
+        private static final String HEADER = "[Script Info]\n"
+                + "ScriptType: v4.00+\n"
+                + "PlayResX: 384\n"
+                + "PlayResY: 288\n"
+                + "ScaledBorderAndShadow: yes\n"
+                + "\n"
+                + "[V4+ Styles]\n"
+                + "Format: Name, Fontname, Fontsize, PrimaryColour, SecondaryColour, OutlineColour, BackColour,"
+                + " Bold, Italic, Underline, StrikeOut, ScaleX, ScaleY, Spacing, Angle, BorderStyle, Outline,"
+                + " Shadow, Alignment, MarginL, MarginR, MarginV, Encoding\n"
+                + "Style: Default,Arial,16,&H00FFFFFF,&H000000FF,&H00000000,&H80000000,0,0,0,0,100,100,0,0,1,1,0,"
+                + "2,10,10,10,1\n"
+                + "\n"
+                + "[Events]\n"
+                + "Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text\n";
+
+        @Override
+        public String getExtension() {
+            return "ass";
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            append(HEADER);
+        }
+
+        @Override
+        void writeEntry(int index, SubtitleGenerator.SubtitleEntry entry, WordTimeline words) throws IOException {
+            append("Dialogue: 0,");
+            appendAssTime(entry.getStartMs());
+            append(',');
+            appendAssTime(entry.getEndMs());
+            append(",Default,,0,0,0,,");
+            appendText(entry.getText());
+            append('\n');
+        }
+
+        /** {@code H:MM:SS.cc}; ASS timestamps only carry centiseconds. */
+        private void appendAssTime(long timeMs) throws IOException {
+            long centis = (timeMs + 5) / 10;
+            appendInt(centis / 360000);
+            append(':');
+            appendDigits((centis / 6000) % 60, 2);
+            append(':');
+            appendDigits((centis / 100) % 60, 2);
+            append('.');
+            appendDigits(centis % 100, 2);
+        }
+
+        @Override
+        void appendEscaped(char c) throws IOException {
+            switch (c) {
+                case '\n':
+                    append("\\N");
+                    break;
+                case '\r':
+                    break;
+                case '{':
+                    append("\\{");
+                    break;
+                case '}':
+                    append("\\}");
+                    break;
+                default:
+                    append(c);
+            }
+        }
+    }
+
+    static final class Ttml extends Buffered {
+        @Override
+        public String getExtension() {
+            return "ttml";
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<tt xmlns=\"http://www.w3.org/ns/ttml\" xml:lang=\"\">\n"
+                    + "  <body>\n"
+                    + "    <div>\n");
+        }
+
+        @Override
+        void writeEntry(int index, SubtitleGenerator.SubtitleEntry entry, WordTimeline words) throws IOException {
+            append("      <p begin=\"");
+            appendTime(entry.getStartMs(), '.');
+            append("\" end=\"");
+            appendTime(entry.getEndMs(), '.');
+            append("\">");
+            appendText(entry.getText());
+            append("</p>\n");
+        }
+
+        @Override
+        void writeFooter() throws IOException {
+            append("    </div>\n"
+                    + "  </body>\n"
+                    + "</tt>\n");
+        }
+
+        @Override
+        void appendEscaped(char c) throws IOException {
+            switch (c) {
+                case '&':
+                    append("&amp;");
+                    break;
+                case '<':
+                    append("&lt;");
+                    break;
+                case '>':
+                    append("&gt;");
+                    break;
+                case '"':
+                    append("&quot;");
+                    break;
+                case '\n':
+                    append("<br/>");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    append(c);
+            }
+        }
+    }
+
+    /**
+     * One object per cue with its text and, when the cue still maps onto the recognized timeline,
+     * every word with its own timing and confidence.
+     */
+    static final class WordJson extends Buffered {
+        private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+        @Override
+        public String getExtension() {
+            return "json";
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            append("{\"cues\":[");
+        }
+
+        @Override
+        void writeEntry(int index, SubtitleGenerator.SubtitleEntry entry, WordTimeline words) throws IOException {
+            if (index > 0) {
+                append(',');
+            }
+            append("\n{\"index\":");
+            appendInt(index + 1);
+            append(",\"start_ms\":");
+            appendInt(entry.getStartMs());
+            append(",\"end_ms\":");
+            appendInt(entry.getEndMs());
+            append(",\"text\":\"");
+            appendText(entry.getText());
+            append("\",\"words\":[");
+            int first = entry.getFirstWord();
+            if (words != null && first >= 0 && first + entry.getWordCount() <= words.size()) {
+                for (int w = first; w < first + entry.getWordCount(); w++) {
+                    if (w > first) {
+                        append(',');
+                    }
+                    append("{\"word\":\"");
+                    for (int c = 0; c < words.getWordLength(w); c++) {
+                        appendEscaped(words.getWordChar(w, c));
+                    }
+                    append("\",\"start_ms\":");
+                    appendInt(words.getStartMs(w));
+                    append(",\"end_ms\":");
+                    appendInt(words.getEndMs(w));
+                    append(",\"conf\":");
+                    appendConfidence(words.getConfidence(w));
+                    append('}');
+                }
+            }
+            append("]}");
+        }
+
+        @Override
+        void writeFooter() throws IOException {
+            append("\n]}\n");
+        }
+
+        /** Three decimals are plenty for Vosk confidences and avoid Float.toString. */
+        private void appendConfidence(float confidence) throws IOException {
+            long millis = Math.round(Math.max(0f, confidence) * 1000);
+            appendInt(millis / 1000);
+            append('.');
+            appendDigits(millis % 1000, 3);
+        }
+
+        @Override
+        void appendEscaped(char c) throws IOException {
+            switch (c) {
+                case '"':
+                    append("\\\"");
+                    break;
+                case '\\':
+                    append("\\\\");
+                    break;
+                case '\n':
+                    append("\\n");
+                    break;
+                case '\r':
+                    append("\\r");
+                    break;
+                case '\t':
+                    append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        append("\\u00");
+                        append(HEX[c >> 4]);
+                        append(HEX[c & 0xf]);
+                    } else {
+                        append(c);
+                    }
+            }
+        }
+    }
+}
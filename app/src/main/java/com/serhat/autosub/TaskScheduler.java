@@ -0,0 +1,111 @@
+package com.serhat.autosub;
+
+import android.util.Log;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * App-wide job scheduler with a separately sized executor per workload class, so quick file I/O is
+ * never queued behind a long recognition or encode. Within a pool, higher priority jobs run first
+ * and equal priorities run in submission order.
+ */
+public class TaskScheduler {
+    private static final String TAG = "TaskScheduler";
+
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 5;
+    public static final int PRIORITY_HIGH = 10;
+
+    /**
+     * {@code CPU} runs the pieces a running job splits its work into, such as recognition windows.
+     * That job blocks on them from its own pool, so they must never be queued on the same one.
+     */
+    public enum Pool { RECOGNITION, EXPORT, IO, CPU }
+
+    /**
+     * Work run by the scheduler. A job cancelled while still queued is run anyway so it can report
+     * the cancellation to its callbacks, so tasks should check {@link JobHandle#isCancelled()} first.
+     */
+    public interface Task {
+        void run(JobHandle job) throws Exception;
+    }
+
+    private final Map<Pool, ThreadPoolExecutor> executors = new EnumMap<>(Pool.class);
+    private final AtomicLong sequence = new AtomicLong();
+
+    public TaskScheduler() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        // Each recognizer holds its own decoder state, so only run a second one on bigger devices.
+        executors.put(Pool.RECOGNITION, createExecutor("recognition", cores >= 6 ? 2 : 1));
+        // FFmpeg already encodes on several threads; running exports side by side only thrashes.
+        executors.put(Pool.EXPORT, createExecutor("export", 1));
+        executors.put(Pool.IO, createExecutor("io", 2));
+        // Leaves a core for the UI and the job that is waiting on the pieces.
+        executors.put(Pool.CPU, createExecutor("cpu", Math.max(1, cores - 1)));
+    }
+
+    public JobHandle submit(Pool pool, int priority, String name, Task task) {
+        JobHandle job = new JobHandle(name);
+        executors.get(pool).execute(new PrioritizedJob(priority, sequence.getAndIncrement(), job, task));
+        return job;
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor executor : executors.values()) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(String name, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), factory);
+    }
+
+    private static class PrioritizedJob implements Runnable, Comparable<PrioritizedJob> {
+        final int priority;
+        final long sequence;
+        final JobHandle job;
+        final Task task;
+
+        PrioritizedJob(int priority, long sequence, JobHandle job, Task task) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.job = job;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            job.markRunning();
+            Throwable error = null;
+            try {
+                task.run(job);
+            } catch (Throwable t) {
+                Log.e(TAG, "Job " + job.getName() + " failed", t);
+                error = t;
+            }
+            job.markFinished(error);
+        }
+
+        @Override
+        public int compareTo(PrioritizedJob other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.serhat.autosub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary transcript sidecar holding the cues together with every recognized word, its timing and
+ * its confidence. Word timings are stored as zigzag varint deltas, word text as ids into a table
+ * of distinct strings and confidences as one byte each, so a word typically takes about six bytes.
+ *
+ * <p>Files are read through a memory-mapped buffer: {@link #open} only checks the header and
+ * section bounds, and {@link #readTimeline()} and {@link #readCues()} decode straight from the
+ * mapping without copying the file onto the heap. The word text is decoded once per distinct
+ * string into a single char array and copied from there into the timeline's char storage, so
+ * loading allocates no object per word.
+ *
+ * <p>Layout: a fixed header followed by the string index, string data, words, utterance
+ * boundaries and cues, each located by an offset in the header.
+ */
+public class TranscriptFile {
+    public static final String EXTENSION = "autosub";
+    public static final int MAGIC = 0x41535458; // "ASTX"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 44;
+
+    private final ByteBuffer buffer;
+    private final int wordCount;
+    private final int cueCount;
+    private final int stringCount;
+    private final int utteranceCount;
+    private final int stringIndexOffset;
+    private final int stringDataOffset;
+    private final int wordsOffset;
+    private final int utterancesOffset;
+    private final int cuesOffset;
+
+    private TranscriptFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a transcript file");
+        }
+        int version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported transcript version " + version);
+        }
+        wordCount = buffer.getInt(8);
+        cueCount = buffer.getInt(12);
+        stringCount = buffer.getInt(16);
+        utteranceCount = buffer.getInt(20);
+        stringIndexOffset = buffer.getInt(24);
+        stringDataOffset = buffer.getInt(28);
+        wordsOffset = buffer.getInt(32);
+        utterancesOffset = buffer.getInt(36);
+        cuesOffset = buffer.getInt(40);
+        if (wordCount < 0 || cueCount < 0 || stringCount < 0 || utteranceCount < 0 || utteranceCount > wordCount
+                || stringIndexOffset != HEADER_SIZE
+                || stringDataOffset - stringIndexOffset != (stringCount + 1) * 4L
+                || wordsOffset < stringDataOffset || utterancesOffset < wordsOffset
+                || cuesOffset < utterancesOffset || cuesOffset > buffer.limit()) {
+            throw new IOException("Corrupt transcript header");
+        }
+    }
+
+    /** Maps {@code file} read-only; the mapping stays valid after the file is closed. */
+    public static TranscriptFile open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return open(raf.getChannel());
+        }
+    }
+
+    public static TranscriptFile open(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Transcript too large");
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        return new TranscriptFile(mapped);
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getCueCount() {
+        return cueCount;
+    }
+
+    /** Decodes every word and utterance boundary into a {@link WordTimeline}. */
+    public WordTimeline readTimeline() throws IOException {
+        try {
+            WordTimeline timeline = new WordTimeline(wordCount);
+            int[] stringStarts = new int[stringCount + 1];
+            char[] stringChars = decodeStrings(stringStarts);
+            ByteBuffer words = section(wordsOffset, utterancesOffset);
+            ByteBuffer utterances = section(utterancesOffset, cuesOffset);
+            int utterance = 0;
+            int nextUtteranceEnd = utteranceCount > 0 ? readVarint(utterances) : -1;
+            int startMs = 0;
+            for (int i = 0; i < wordCount; i++) {
+                int stringId = readVarint(words);
+                startMs += zigzagDecode(readVarint(words));
+                int endMs = startMs + zigzagDecode(readVarint(words));
+                float confidence = (words.get() & 0xff) / 255f;
+                int textStart = stringStarts[stringId];
+                timeline.addWord(stringChars, textStart, stringStarts[stringId + 1] - textStart, startMs, endMs,
+                        confidence);
+                if (i + 1 == nextUtteranceEnd) {
+                    timeline.endUtterance();
+                    utterance++;
+                    nextUtteranceEnd = utterance < utteranceCount ? nextUtteranceEnd + readVarint(utterances) : -1;
+                }
+            }
+            return timeline;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt transcript words", e);
+        }
+    }
+
+    public List<SubtitleGenerator.SubtitleEntry> readCues() throws IOException {
+        try {
+            List<SubtitleGenerator.SubtitleEntry> cues = new ArrayList<>(cueCount);
+            ByteBuffer in = section(cuesOffset, buffer.limit());
+            int startMs = 0;
+            for (int i = 0; i < cueCount; i++) {
+                startMs += zigzagDecode(readVarint(in));
+                int endMs = startMs + zigzagDecode(readVarint(in));
+                int firstWord = readVarint(in) - 1;
+                int count = readVarint(in);
+                String text = readUtf8(in, readVarint(in));
+                cues.add(new SubtitleGenerator.SubtitleEntry(i + 1, startMs, endMs, text, firstWord, count));
+            }
+            return cues;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt transcript cues", e);
+        }
+    }
+
+    /**
+     * Decodes the string table into one char array and fills {@code starts} with the offset of
+     * every string in it, plus the end of the last one. UTF-8 never takes fewer bytes than the
+     * UTF-16 chars it decodes to, so the string data size bounds the array.
+     */
+    private char[] decodeStrings(int[] starts) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer out = CharBuffer.allocate(wordsOffset - stringDataOffset);
+        for (int id = 0; id < stringCount; id++) {
+            int start = buffer.getInt(stringIndexOffset + id * 4);
+            int end = buffer.getInt(stringIndexOffset + id * 4 + 4);
+            if (start < 0 || start > end || stringDataOffset + end > wordsOffset) {
+                throw new IOException("Corrupt transcript string table");
+            }
+            starts[id] = out.position();
+            decoder.reset();
+            CoderResult result = decoder.decode(section(stringDataOffset + start, stringDataOffset + end), out, true);
+            if (result.isError() || result.isOverflow() || decoder.flush(out).isOverflow()) {
+                throw new IOException("Corrupt transcript string " + id);
+            }
+        }
+        starts[stringCount] = out.position();
+        return out.array();
+    }
+
+    private ByteBuffer section(int from, int to) {
+        ByteBuffer section = buffer.duplicate();
+        section.limit(to);
+        section.position(from);
+        return section;
+    }
+
+    private static String readUtf8(ByteBuffer in, int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IndexOutOfBoundsException("Malformed varint");
+    }
+
+    private static int zigzagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes {@code cues} and {@code words} (which may be null) to {@code out}. The sections are
+     * encoded in memory first, since the header records their offsets.
+     */
+    public static void write(List<SubtitleGenerator.SubtitleEntry> cues, WordTimeline words, OutputStream out)
+            throws IOException {
+        int wordCount = words != null ? words.size() : 0;
+        Map<String, Integer> ids = new HashMap<>();
+        ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+        ByteArrayOutputStream stringIndex = new ByteArrayOutputStream();
+        DataOutputStream index = new DataOutputStream(stringIndex);
+        ByteArrayOutputStream wordBytes = new ByteArrayOutputStream(wordCount * 5);
+
+        int previousStart = 0;
+        for (int i = 0; i < wordCount; i++) {
+            String word = words.getWord(i);
+            Integer id = ids.get(word);
+            if (id == null) {
+                id = ids.size();
+                ids.put(word, id);
+                index.writeInt(stringData.size());
+                stringData.write(word.getBytes(StandardCharsets.UTF_8));
+            }
+            writeVarint(wordBytes, id);
+            writeVarint(wordBytes, zigzagEncode(words.getStartMs(i) - previousStart));
+            writeVarint(wordBytes, zigzagEncode(words.getEndMs(i) - words.getStartMs(i)));
+            wordBytes.write(Math.round(Math.max(0f, Math.min(1f, words.getConfidence(i))) * 255));
+            previousStart = words.getStartMs(i);
+        }
+        index.writeInt(stringData.size());
+
+        ByteArrayOutputStream utteranceBytes = new ByteArrayOutputStream();
+        int utteranceCount = words != null ? words.utteranceCount() : 0;
+        int previousEnd = 0;
+        for (int u = 0; u < utteranceCount; u++) {
+            writeVarint(utteranceBytes, words.utteranceEnd(u) - previousEnd);
+            previousEnd = words.utteranceEnd(u);
+        }
+
+        ByteArrayOutputStream cueBytes = new ByteArrayOutputStream(cues.size() * 48);
+        previousStart = 0;
+        for (SubtitleGenerator.SubtitleEntry cue : cues) {
+            writeVarint(cueBytes, zigzagEncode(cue.getStartMs() - previousStart));
+            writeVarint(cueBytes, zigzagEncode(cue.getEndMs() - cue.getStartMs()));
+            writeVarint(cueBytes, cue.getFirstWord() + 1);
+            writeVarint(cueBytes, cue.getWordCount());
+            byte[] text = cue.getText().getBytes(StandardCharsets.UTF_8);
+            writeVarint(cueBytes, text.length);
+            cueBytes.write(text);
+            previousStart = cue.getStartMs();
+        }
+
+        int stringDataOffset = HEADER_SIZE + stringIndex.size();
+        int wordsOffset = stringDataOffset + stringData.size();
+        int utterancesOffset = wordsOffset + wordBytes.size();
+        int cuesOffset = utterancesOffset + utteranceBytes.size();
+
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeShort(0);
+        header.writeInt(wordCount);
+        header.writeInt(cues.size());
+        header.writeInt(ids.size());
+        header.writeInt(utteranceCount);
+        header.writeInt(HEADER_SIZE);
+        header.writeInt(stringDataOffset);
+        header.writeInt(wordsOffset);
+        header.writeInt(utterancesOffset);
+        header.writeInt(cuesOffset);
+        stringIndex.writeTo(out);
+        stringData.writeTo(out);
+        wordBytes.writeTo(out);
+        utteranceBytes.writeTo(out);
+        cueBytes.writeTo(out);
+        out.flush();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int zigzagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+}
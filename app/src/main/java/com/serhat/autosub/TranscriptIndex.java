@@ -0,0 +1,218 @@
+package com.serhat.autosub;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.util.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Library-wide full-text index over every transcribed video, kept in an SQLite FTS4 table. Each
+ * row holds one utterance (split at {@value #MAX_SEGMENT_WORDS} words) with the start time of
+ * every word alongside, so a phrase hit resolves to the time of its first word rather than just
+ * the start of its segment. A video is re-indexed as a whole whenever a job for it finishes with
+ * a transcript other than the indexed one.
+ */
+public class TranscriptIndex extends SQLiteOpenHelper {
+    private static final String TAG = "TranscriptIndex";
+    private static final String DATABASE_NAME = "transcript_index.db";
+    private static final int DATABASE_VERSION = 2;
+    private static final int MAX_SEGMENT_WORDS = 48;
+
+    public static class Hit {
+        private final Uri videoUri;
+        private final String title;
+        private final String languageCode;
+        private final long timeMs;
+        private final String snippet;
+
+        Hit(Uri videoUri, String title, String languageCode, long timeMs, String snippet) {
+            this.videoUri = videoUri;
+            this.title = title;
+            this.languageCode = languageCode;
+            this.timeMs = timeMs;
+            this.snippet = snippet;
+        }
+
+        public Uri getVideoUri() { return videoUri; }
+        public String getTitle() { return title; }
+        public String getLanguageCode() { return languageCode; }
+        public long getTimeMs() { return timeMs; }
+        public String getSnippet() { return snippet; }
+    }
+
+    public TranscriptIndex(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE videos (_id INTEGER PRIMARY KEY, uri TEXT NOT NULL UNIQUE, title TEXT, "
+                + "lang_code TEXT, cache_key TEXT, word_count INTEGER, indexed_at INTEGER)");
+        db.execSQL("CREATE VIRTUAL TABLE segments USING fts4(text, times, video_id, "
+                + "notindexed=times, notindexed=video_id)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS segments");
+        db.execSQL("DROP TABLE IF EXISTS videos");
+        onCreate(db);
+    }
+
+    /**
+     * Replaces the indexed transcript of {@code videoUri} in one transaction. {@code cacheKey} is
+     * the transcription cache key, which covers both the video content and the model; when it
+     * matches the indexed one, e.g. on a cache hit, the index is left alone. A null key always
+     * re-indexes.
+     */
+    public synchronized void indexVideo(Uri videoUri, String title, String languageCode, String cacheKey,
+                                        WordTimeline words) {
+        String uri = videoUri.toString();
+        String name = title != null ? title : uri;
+        String lang = languageCode != null ? languageCode : "";
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                long videoId = -1;
+                try (Cursor c = db.rawQuery("SELECT _id, cache_key FROM videos WHERE uri = ?", new String[]{uri})) {
+                    if (c.moveToFirst()) {
+                        videoId = c.getLong(0);
+                        if (cacheKey != null && cacheKey.equals(c.getString(1))) {
+                            return;
+                        }
+                    }
+                }
+                if (videoId >= 0) {
+                    db.execSQL("DELETE FROM segments WHERE video_id = ?", new Object[]{videoId});
+                    db.execSQL("UPDATE videos SET title = ?, lang_code = ?, cache_key = ?, word_count = ?, "
+                                    + "indexed_at = ? WHERE _id = ?",
+                            new Object[]{name, lang, cacheKey, words.size(), System.currentTimeMillis(), videoId});
+                } else {
+                    try (SQLiteStatement insert = db.compileStatement("INSERT INTO videos "
+                            + "(uri, title, lang_code, cache_key, word_count, indexed_at) VALUES (?, ?, ?, ?, ?, ?)")) {
+                        insert.bindString(1, uri);
+                        insert.bindString(2, name);
+                        insert.bindString(3, lang);
+                        if (cacheKey != null) {
+                            insert.bindString(4, cacheKey);
+                        } else {
+                            insert.bindNull(4);
+                        }
+                        insert.bindLong(5, words.size());
+                        insert.bindLong(6, System.currentTimeMillis());
+                        videoId = insert.executeInsert();
+                    }
+                }
+                int segments = insertSegments(db, videoId, words);
+                db.setTransactionSuccessful();
+                Log.d(TAG, "Indexed " + words.size() + " words in " + segments + " segments for " + uri);
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error indexing transcript of " + uri, e);
+        }
+    }
+
+    private static int insertSegments(SQLiteDatabase db, long videoId, WordTimeline words) {
+        StringBuilder text = new StringBuilder(512);
+        StringBuilder times = new StringBuilder(512);
+        int segments = 0;
+        try (SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO segments (text, times, video_id) VALUES (?, ?, ?)")) {
+            for (int u = 0; u < words.utteranceCount(); u++) {
+                int end = words.utteranceEnd(u);
+                for (int from = words.utteranceStart(u); from < end; from += MAX_SEGMENT_WORDS) {
+                    text.setLength(0);
+                    times.setLength(0);
+                    for (int w = from; w < Math.min(end, from + MAX_SEGMENT_WORDS); w++) {
+                        if (w > from) {
+                            text.append(' ');
+                            times.append(',');
+                        }
+                        words.appendWord(w, text);
+                        times.append(words.getStartMs(w));
+                    }
+                    insert.bindString(1, text.toString());
+                    insert.bindString(2, times.toString());
+                    insert.bindLong(3, videoId);
+                    insert.executeInsert();
+                    insert.clearBindings();
+                    segments++;
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Finds {@code query} as a phrase across all indexed videos, most recently indexed video
+     * first and in time order within a video. Call off the main thread.
+     */
+    public List<Hit> search(String query, int limit) {
+        List<Hit> hits = new ArrayList<>();
+        String phrase = toPhraseQuery(query);
+        if (phrase == null) {
+            return hits;
+        }
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT videos.uri, videos.title, videos.lang_code, "
+                        + "segments.text, segments.times, offsets(segments), "
+                        + "snippet(segments, '', '', '\u2026', 0, 12) "
+                        + "FROM segments JOIN videos ON videos._id = segments.video_id "
+                        + "WHERE segments MATCH ? ORDER BY videos.indexed_at DESC, segments.docid LIMIT ?",
+                new String[]{phrase, String.valueOf(limit)})) {
+            while (c.moveToNext()) {
+                long timeMs = matchTime(c.getString(3), c.getString(4), c.getString(5));
+                hits.add(new Hit(Uri.parse(c.getString(0)), c.getString(1), c.getString(2), timeMs,
+                        c.getString(6)));
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error searching transcripts for " + query, e);
+        }
+        return hits;
+    }
+
+    /** Quotes the whole query as one FTS phrase; returns null when nothing searchable is left. */
+    static String toPhraseQuery(String query) {
+        if (query == null) {
+            return null;
+        }
+        String cleaned = query.replace('"', ' ').trim();
+        return cleaned.isEmpty() ? null : '"' + cleaned + '"';
+    }
+
+    /**
+     * Maps the first match reported by {@code offsets()} (column, term, byte offset, size
+     * quadruples) to the start time of the word it falls in. Words are separated by single
+     * spaces, so the word index is the number of spaces before the match.
+     */
+    static long matchTime(String text, String times, String offsets) {
+        String[] parts = offsets.split(" ");
+        int byteOffset = Integer.MAX_VALUE;
+        for (int i = 0; i + 3 < parts.length; i += 4) {
+            if (Integer.parseInt(parts[i]) == 0) {
+                byteOffset = Math.min(byteOffset, Integer.parseInt(parts[i + 2]));
+            }
+        }
+        int word = 0;
+        if (byteOffset != Integer.MAX_VALUE) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < Math.min(byteOffset, bytes.length); i++) {
+                if (bytes[i] == ' ') {
+                    word++;
+                }
+            }
+        }
+        String[] starts = times.split(",");
+        return Long.parseLong(starts[Math.min(word, starts.length - 1)]);
+    }
+}
@@ -0,0 +1,163 @@
+package com.serhat.autosub;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * On-disk cache of word-level recognition results keyed by a cheap fingerprint of the video
+ * content and the UUID of the model that produced them. Entries are evicted least recently used
+ * first once the cache grows past its size limit.
+ */
+public class TranscriptionCache {
+    private static final String TAG = "TranscriptionCache";
+    private static final int MAGIC = 0x41535443; // "ASTC"
+    private static final int VERSION = 2;
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final int SAMPLE_COUNT = 5;
+    private static final String SUFFIX = ".words";
+
+    private final File directory;
+    private final long maxBytes;
+
+    public TranscriptionCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+    }
+
+    public static String readModelUuid(Context context, String modelName) {
+        try (InputStream in = context.getAssets().open(modelName + "/uuid");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            return line != null ? line.trim() : null;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading model uuid for " + modelName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Hashes the content length together with a handful of evenly spaced samples of the file, so
+     * fingerprinting a multi-gigabyte video reads only a few hundred kilobytes.
+     */
+    public static String fingerprint(Context context, Uri videoUri, String modelUuid) throws IOException {
+        try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(videoUri, "r")) {
+            if (pfd == null) {
+                throw new IOException("Cannot open " + videoUri);
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = pfd.getStatSize();
+            digest.update(modelUuid.getBytes(StandardCharsets.UTF_8));
+            digest.update(ByteBuffer.allocate(8).putLong(size).array());
+
+            try (FileInputStream in = new FileInputStream(pfd.getFileDescriptor())) {
+                FileChannel channel = in.getChannel();
+                ByteBuffer sample = ByteBuffer.allocate(SAMPLE_SIZE);
+                for (int i = 0; i < SAMPLE_COUNT; i++) {
+                    long position = size <= SAMPLE_SIZE ? 0 : (size - SAMPLE_SIZE) * i / (SAMPLE_COUNT - 1);
+                    sample.clear();
+                    while (sample.hasRemaining()) {
+                        int read = channel.read(sample, position + sample.position());
+                        if (read <= 0) break;
+                    }
+                    digest.update(sample.array(), 0, sample.position());
+                    if (size <= SAMPLE_SIZE) break;
+                }
+            }
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    public synchronized WordTimeline get(String key) {
+        File file = new File(directory, key + SUFFIX);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                file.delete();
+                return null;
+            }
+            WordTimeline timeline = WordTimeline.readFrom(in);
+            file.setLastModified(System.currentTimeMillis());
+            return timeline;
+        } catch (IOException e) {
+            Log.e(TAG, "Dropping unreadable cache entry " + key, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    public synchronized void put(String key, WordTimeline timeline) {
+        File file = new File(directory, key + SUFFIX);
+        File tmp = new File(directory, key + SUFFIX + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            timeline.writeTo(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing cache entry " + key, e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        evict();
+    }
+
+    private void evict() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            if (total <= maxBytes) break;
+            total -= f.length();
+            Log.d(TAG, "Evicting " + f.getName());
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.serhat.autosub;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Append-only record of the utterances finalized so far in a long transcription. Each record holds
+ * the words of one or more complete utterances and the source position recognition can safely
+ * restart from; a record torn by process death is detected and dropped on the next restore.
+ */
+public class TranscriptionCheckpoint implements Closeable {
+    private static final String TAG = "TranscriptionCheckpoint";
+    private static final int MAGIC = 0x41534350; // "ASCP"
+    private static final int VERSION = 1;
+    private static final int RECORD_END = 0x52454e44; // "REND"
+    private static final int HEADER_BYTES = 8;
+
+    private final File file;
+    private long validLength = 0;
+    private int resumeMs = 0;
+    private int savedUtterances = 0;
+    private DataOutputStream out;
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(4096);
+
+    public TranscriptionCheckpoint(File file) {
+        this.file = file;
+    }
+
+    public int getResumeMs() {
+        return resumeMs;
+    }
+
+    /** Reads every complete record, or returns null if there is nothing to resume from. */
+    public WordTimeline restore() {
+        if (!file.exists()) {
+            return null;
+        }
+        WordTimeline timeline = new WordTimeline();
+        WordTimeline record = new WordTimeline(64);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long position = HEADER_BYTES;
+            validLength = position;
+            while (true) {
+                record.clear();
+                int utterances = in.readInt();
+                int recordResumeMs = in.readInt();
+                position += 8;
+                for (int u = 0; u < utterances; u++) {
+                    int words = in.readInt();
+                    position += 4;
+                    for (int w = 0; w < words; w++) {
+                        int start = in.readInt();
+                        int end = in.readInt();
+                        float confidence = in.readFloat();
+                        String text = in.readUTF();
+                        position += 14 + utf8Length(text);
+                        record.addWord(text, start, end, confidence);
+                    }
+                    record.endUtterance();
+                }
+                if (in.readInt() != RECORD_END) {
+                    break;
+                }
+                position += 4;
+                timeline.append(record);
+                validLength = position;
+                resumeMs = recordResumeMs;
+            }
+        } catch (EOFException e) {
+            // A torn final record; everything before it is still valid.
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading checkpoint " + file.getName(), e);
+        }
+        savedUtterances = timeline.utteranceCount();
+        if (savedUtterances == 0) {
+            validLength = 0;
+            resumeMs = 0;
+            return null;
+        }
+        Log.d(TAG, "Restored " + timeline.size() + " words, resuming at " + resumeMs + " ms");
+        return timeline;
+    }
+
+    /**
+     * Appends the utterances of {@code timeline} that are not in the file yet. Recognition can be
+     * restarted from {@code resumeMs} of the source without losing any of them.
+     */
+    public void append(WordTimeline timeline, int resumeMs) throws IOException {
+        int utterances = timeline.utteranceCount() - savedUtterances;
+        if (utterances <= 0) {
+            return;
+        }
+        if (out == null) {
+            openForAppend();
+        }
+        recordBuffer.reset();
+        DataOutputStream record = new DataOutputStream(recordBuffer);
+        record.writeInt(utterances);
+        record.writeInt(resumeMs);
+        for (int u = savedUtterances; u < timeline.utteranceCount(); u++) {
+            int from = timeline.utteranceStart(u);
+            int to = timeline.utteranceEnd(u);
+            record.writeInt(to - from);
+            for (int i = from; i < to; i++) {
+                record.writeInt(timeline.getStartMs(i));
+                record.writeInt(timeline.getEndMs(i));
+                record.writeFloat(timeline.getConfidence(i));
+                record.writeUTF(timeline.getWord(i));
+            }
+        }
+        record.writeInt(RECORD_END);
+        recordBuffer.writeTo(out);
+        out.flush();
+        savedUtterances = timeline.utteranceCount();
+        this.resumeMs = resumeMs;
+    }
+
+    private void openForAppend() throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        if (validLength < HEADER_BYTES) {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, false)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(validLength);
+        }
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    @Override
+    public void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing checkpoint", e);
+            }
+            out = null;
+        }
+    }
+
+    public void delete() {
+        close();
+        file.delete();
+    }
+
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x0001 && c <= 0x007f) {
+                length++;
+            } else if (c <= 0x07ff) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
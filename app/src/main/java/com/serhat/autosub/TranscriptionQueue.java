@@ -0,0 +1,183 @@
+package com.serhat.autosub;
+
+import android.net.Uri;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Persistent list of videos waiting to be transcribed in the background. Every change is written
+ * straight to disk, and items that were running when the process died are put back in line.
+ */
+public class TranscriptionQueue {
+    private static final String TAG = "TranscriptionQueue";
+    private static final int MAX_FINISHED_ITEMS = 50;
+
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_DONE = "done";
+    public static final String STATUS_FAILED = "failed";
+
+    public static class Item {
+        private final String id;
+        private final Uri videoUri;
+        private final String languageCode;
+        private String status;
+        private String outputPath;
+        private String error;
+
+        Item(String id, Uri videoUri, String languageCode, String status) {
+            this.id = id;
+            this.videoUri = videoUri;
+            this.languageCode = languageCode;
+            this.status = status;
+        }
+
+        public String getId() { return id; }
+        public Uri getVideoUri() { return videoUri; }
+        public String getLanguageCode() { return languageCode; }
+        public String getStatus() { return status; }
+        public String getOutputPath() { return outputPath; }
+        public String getError() { return error; }
+    }
+
+    private final File file;
+    private final List<Item> items = new ArrayList<>();
+
+    public TranscriptionQueue(File file) {
+        this.file = file;
+        load();
+    }
+
+    public synchronized Item add(Uri videoUri, String languageCode) {
+        Item item = new Item(UUID.randomUUID().toString(), videoUri, languageCode, STATUS_PENDING);
+        items.add(item);
+        save();
+        return item;
+    }
+
+    /** Returns the oldest pending item after marking it running, or null if nothing is waiting. */
+    public synchronized Item takeNext() {
+        for (Item item : items) {
+            if (STATUS_PENDING.equals(item.status)) {
+                item.status = STATUS_RUNNING;
+                save();
+                return item;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void markDone(Item item, String outputPath) {
+        item.status = STATUS_DONE;
+        item.outputPath = outputPath;
+        trimFinished();
+        save();
+    }
+
+    public synchronized void markFailed(Item item, String error) {
+        item.status = STATUS_FAILED;
+        item.error = error;
+        trimFinished();
+        save();
+    }
+
+    /** Puts a running item back in line, e.g. when the service has to stop before it finishes. */
+    public synchronized void markPending(Item item) {
+        item.status = STATUS_PENDING;
+        save();
+    }
+
+    public synchronized int count(String status) {
+        int count = 0;
+        for (Item item : items) {
+            if (status.equals(item.status)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void trimFinished() {
+        int finished = count(STATUS_DONE) + count(STATUS_FAILED);
+        Iterator<Item> it = items.iterator();
+        while (finished > MAX_FINISHED_ITEMS && it.hasNext()) {
+            Item item = it.next();
+            if (STATUS_DONE.equals(item.status) || STATUS_FAILED.equals(item.status)) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n == -1) break;
+                read += n;
+            }
+            JSONArray array = new JSONArray(new String(data, 0, read, StandardCharsets.UTF_8));
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject obj = array.getJSONObject(i);
+                String status = obj.getString("status");
+                if (STATUS_RUNNING.equals(status)) {
+                    // The process died while this item was being transcribed.
+                    status = STATUS_PENDING;
+                }
+                Item item = new Item(obj.getString("id"), Uri.parse(obj.getString("uri")),
+                        obj.getString("lang"), status);
+                item.outputPath = obj.optString("output", null);
+                item.error = obj.optString("error", null);
+                items.add(item);
+            }
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Error loading transcription queue", e);
+        }
+    }
+
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            JSONArray array = new JSONArray();
+            for (Item item : items) {
+                JSONObject obj = new JSONObject();
+                obj.put("id", item.id);
+                obj.put("uri", item.videoUri.toString());
+                obj.put("lang", item.languageCode);
+                obj.put("status", item.status);
+                if (item.outputPath != null) obj.put("output", item.outputPath);
+                if (item.error != null) obj.put("error", item.error);
+                array.put(obj);
+            }
+            out.write(array.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Error saving transcription queue", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Error replacing transcription queue file");
+            tmp.delete();
+        }
+    }
+}
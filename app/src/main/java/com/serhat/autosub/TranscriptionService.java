@@ -0,0 +1,283 @@
+package com.serhat.autosub;
+
+import android.app.ActivityManager;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Foreground service that works through the {@link TranscriptionQueue} independently of any
+ * activity. Models stay loaded for as long as the service runs, and a second video is only
+ * transcribed alongside the first when the device has memory to spare.
+ */
+public class TranscriptionService extends Service {
+    private static final String TAG = "TranscriptionService";
+    private static final String CHANNEL_ID = "transcription";
+    private static final int NOTIFICATION_ID = 1001;
+    private static final String ACTION_ENQUEUE = "com.serhat.autosub.action.ENQUEUE";
+    private static final String EXTRA_LANG_CODE = "lang_code";
+    private static final String QUEUE_FILE = "transcription_queue.json";
+    private static final long PARALLEL_MIN_AVAILABLE_BYTES = 3L * 1024 * 1024 * 1024;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, ArrayDeque<SubtitleGenerator>> idleGenerators = new HashMap<>();
+    private final List<SubtitleGenerator> allGenerators = new ArrayList<>();
+    private final List<SubtitleGenerator> busyGenerators = new ArrayList<>();
+    private TranscriptionQueue queue;
+    private int running = 0;
+    private int currentProgress = 0;
+    private boolean stopping = false;
+
+    public static void enqueue(Context context, Uri videoUri, String languageCode) {
+        try {
+            // Keep read access to the video after the picker's temporary grant expires.
+            context.getContentResolver().takePersistableUriPermission(videoUri,
+                    Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (SecurityException e) {
+            Log.d(TAG, "Could not persist read permission for " + videoUri);
+        }
+        Intent intent = new Intent(context, TranscriptionService.class)
+                .setAction(ACTION_ENQUEUE)
+                .setData(videoUri)
+                .putExtra(EXTRA_LANG_CODE, languageCode);
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        queue = new TranscriptionQueue(new File(getFilesDir(), QUEUE_FILE));
+        createNotificationChannel();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(),
+                ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        if (intent != null && ACTION_ENQUEUE.equals(intent.getAction()) && intent.getData() != null) {
+            queue.add(intent.getData(), intent.getStringExtra(EXTRA_LANG_CODE));
+        }
+        startPending();
+        return START_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onDestroy() {
+        handler.removeCallbacksAndMessages(null);
+        stopTranscribing();
+        super.onDestroy();
+    }
+
+    /**
+     * Cancels running jobs and releases idle generators. A busy generator is only released from
+     * {@link #finish} once its job has stopped using the model, which also requeues its item.
+     */
+    private void stopTranscribing() {
+        if (stopping) {
+            return;
+        }
+        stopping = true;
+        for (SubtitleGenerator generator : allGenerators) {
+            if (busyGenerators.contains(generator)) {
+                generator.cancelGeneration();
+            } else {
+                generator.release();
+            }
+        }
+        allGenerators.clear();
+        idleGenerators.clear();
+    }
+
+    private void startPending() {
+        TranscriptionQueue.Item item;
+        while (running < maxConcurrentItems() && (item = queue.takeNext()) != null) {
+            running++;
+            start(item);
+        }
+        if (running == 0) {
+            Log.d(TAG, "Queue drained, stopping");
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            stopSelf();
+        } else {
+            updateNotification();
+        }
+    }
+
+    private int maxConcurrentItems() {
+        ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(memoryInfo);
+        if (activityManager.isLowRamDevice() || memoryInfo.lowMemory) {
+            return 1;
+        }
+        return memoryInfo.availMem >= PARALLEL_MIN_AVAILABLE_BYTES ? 2 : 1;
+    }
+
+    private void start(TranscriptionQueue.Item item) {
+        Log.d(TAG, "Transcribing " + item.getVideoUri());
+        ArrayDeque<SubtitleGenerator> idle = idleGenerators.get(item.getLanguageCode());
+        SubtitleGenerator generator = idle != null ? idle.poll() : null;
+        if (generator != null) {
+            transcribe(item, generator);
+            return;
+        }
+        SubtitleGenerator created = new SubtitleGenerator(getApplicationContext());
+        allGenerators.add(created);
+        created.initModel(new SubtitleGenerator.ModelInitCallback() {
+            @Override
+            public void onModelInitialized() {
+                handler.post(() -> transcribe(item, created));
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                allGenerators.remove(created);
+                finish(item, null, null, "Model error: " + errorMessage);
+            }
+        }, item.getLanguageCode());
+    }
+
+    private void transcribe(TranscriptionQueue.Item item, SubtitleGenerator generator) {
+        if (stopping) {
+            generator.release();
+            queue.markPending(item);
+            return;
+        }
+        busyGenerators.add(generator);
+        generator.generateSubtitles(item.getVideoUri(), new SubtitleGenerator.SubtitleGenerationCallback() {
+            @Override
+            public void onSubtitlesAppended(int fromIndex, List<SubtitleGenerator.SubtitleEntry> appended) {
+            }
+
+            @Override
+            public void onSubtitlesGenerated(List<SubtitleGenerator.SubtitleEntry> subtitleEntries) {
+                generator.saveSubtitlesToFile(subtitleEntries, "srt", item.getVideoUri(),
+                        new SubtitleGenerator.SubtitleSaveCallback() {
+                    @Override
+                    public void onSubtitlesSaved(String filePath) {
+                        finish(item, generator, filePath, null);
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        finish(item, generator, null, errorMessage);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                finish(item, generator, null, errorMessage);
+            }
+
+            @Override
+            public void onProgressUpdate(int progress) {
+                handler.post(() -> {
+                    currentProgress = progress;
+                    updateNotification();
+                });
+            }
+
+            @Override
+            public void onSilenceSkipped(long skippedMs, long totalMs) {
+            }
+
+            @Override
+            public void onLiveCaption(String text) {
+            }
+
+            @Override
+            public void onCancelled() {
+                finish(item, generator, null, "Cancelled");
+            }
+        });
+    }
+
+    private void finish(TranscriptionQueue.Item item, SubtitleGenerator generator, String outputPath, String error) {
+        handler.post(() -> {
+            if (error == null) {
+                Log.d(TAG, "Transcribed " + item.getVideoUri() + " to " + outputPath);
+                queue.markDone(item, outputPath);
+            } else if (stopping) {
+                Log.d(TAG, "Stopped transcribing " + item.getVideoUri() + ", requeued");
+                queue.markPending(item);
+            } else {
+                Log.e(TAG, "Failed to transcribe " + item.getVideoUri() + ": " + error);
+                queue.markFailed(item, error);
+            }
+            busyGenerators.remove(generator);
+            if (stopping) {
+                if (generator != null) {
+                    generator.release();
+                }
+                return;
+            }
+            if (generator != null) {
+                ArrayDeque<SubtitleGenerator> idle = idleGenerators.get(item.getLanguageCode());
+                if (idle == null) {
+                    idle = new ArrayDeque<>();
+                    idleGenerators.put(item.getLanguageCode(), idle);
+                }
+                idle.add(generator);
+            }
+            running--;
+            currentProgress = 0;
+            startPending();
+        });
+    }
+
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Background transcription",
+                    NotificationManager.IMPORTANCE_LOW);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+    }
+
+    private Notification buildNotification() {
+        int pending = queue.count(TranscriptionQueue.STATUS_PENDING);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.baseline_movie_24)
+                .setContentTitle("Transcribing " + Math.max(running, 1) + " video" + (running > 1 ? "s" : ""))
+                .setContentText(pending > 0 ? pending + " more in queue" : "Last video in queue")
+                .setProgress(100, currentProgress, running == 0)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setContentIntent(contentIntent)
+                .build();
+    }
+
+    private void updateNotification() {
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        manager.notify(NOTIFICATION_ID, buildNotification());
+    }
+}
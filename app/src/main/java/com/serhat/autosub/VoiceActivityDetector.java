@@ -0,0 +1,192 @@
+package com.serhat.autosub;
+
+/**
+ * Energy / zero-crossing voice activity detector for 16 kHz mono s16le PCM. Non-speech frames are
+ * dropped before they reach the recognizer; a short pre-roll and hangover of silence is kept around
+ * speech so the recognizer still sees utterance endpoints. Every gap that is removed is recorded so
+ * recognizer timestamps (which only count the audio that was fed) can be mapped back to source time.
+ */
+public class VoiceActivityDetector {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int FRAME_MS = 20;
+    private static final int FRAME_SAMPLES = SAMPLE_RATE * FRAME_MS / 1000;
+    private static final int FRAME_BYTES = FRAME_SAMPLES * 2;
+    private static final int PRE_ROLL_FRAMES = 300 / FRAME_MS;
+    private static final int HANGOVER_FRAMES = 600 / FRAME_MS;
+    private static final double MIN_SPEECH_RMS = 300;
+    private static final double NOISE_FLOOR_FACTOR = 3.0;
+    private static final double MAX_SPEECH_ZCR = 0.45;
+
+    private final byte[] frame = new byte[FRAME_BYTES];
+    private int framePos = 0;
+
+    private final byte[][] preRoll = new byte[PRE_ROLL_FRAMES][FRAME_BYTES];
+    private int preRollStart = 0;
+    private int preRollCount = 0;
+
+    private byte[] output = new byte[8192];
+    private int outputLength;
+
+    private double noiseFloor = MIN_SPEECH_RMS / NOISE_FLOOR_FACTOR;
+    private int hangover = 0;
+    private boolean droppedSinceLastKept = false;
+
+    private long sourceFrames = 0;
+    private long keptFrames = 0;
+
+    // Breakpoints: from fed frame gapFedFrame[i] onwards, source time = fed time + gapOffsetFrames[i].
+    private long[] gapFedFrame = new long[16];
+    private long[] gapOffsetFrames = new long[16];
+    private int gapCount = 0;
+
+    /**
+     * Classifies {@code length} bytes of PCM and returns how many bytes of speech are now available
+     * from {@link #getOutput()}.
+     */
+    public int process(byte[] data, int length) {
+        outputLength = 0;
+        int pos = 0;
+        while (pos < length) {
+            int n = Math.min(FRAME_BYTES - framePos, length - pos);
+            System.arraycopy(data, pos, frame, framePos, n);
+            framePos += n;
+            pos += n;
+            if (framePos == FRAME_BYTES) {
+                processFrame();
+                framePos = 0;
+            }
+        }
+        return outputLength;
+    }
+
+    /**
+     * Ends the stream. The trailing partial frame is too short to classify, so it is passed on as
+     * speech, together with any buffered pre-roll, and the last samples always reach the
+     * recognizer. Returns how many bytes are now available from {@link #getOutput()}.
+     */
+    public int flush() {
+        outputLength = 0;
+        if (framePos == 0) {
+            return 0;
+        }
+        sourceFrames++;
+        while (preRollCount > 0) {
+            keep(preRoll[preRollStart]);
+            preRollStart = (preRollStart + 1) % PRE_ROLL_FRAMES;
+            preRollCount--;
+        }
+        keep(frame);
+        outputLength -= FRAME_BYTES - framePos;
+        framePos = 0;
+        return outputLength;
+    }
+
+    public byte[] getOutput() {
+        return output;
+    }
+
+    private void processFrame() {
+        sourceFrames++;
+        if (isSpeech(frame)) {
+            hangover = HANGOVER_FRAMES;
+            while (preRollCount > 0) {
+                keep(preRoll[preRollStart]);
+                preRollStart = (preRollStart + 1) % PRE_ROLL_FRAMES;
+                preRollCount--;
+            }
+            keep(frame);
+        } else if (hangover > 0) {
+            hangover--;
+            keep(frame);
+        } else {
+            if (preRollCount == PRE_ROLL_FRAMES) {
+                // Oldest buffered frame falls out of the pre-roll window and is skipped for good.
+                preRollStart = (preRollStart + 1) % PRE_ROLL_FRAMES;
+                preRollCount--;
+                droppedSinceLastKept = true;
+            }
+            int slot = (preRollStart + preRollCount) % PRE_ROLL_FRAMES;
+            System.arraycopy(frame, 0, preRoll[slot], 0, FRAME_BYTES);
+            preRollCount++;
+        }
+    }
+
+    private void keep(byte[] source) {
+        if (droppedSinceLastKept) {
+            addGap(keptFrames, sourceFrames - preRollCount - 1 - keptFrames);
+            droppedSinceLastKept = false;
+        }
+        if (outputLength + FRAME_BYTES > output.length) {
+            byte[] grown = new byte[output.length * 2];
+            System.arraycopy(output, 0, grown, 0, outputLength);
+            output = grown;
+        }
+        System.arraycopy(source, 0, output, outputLength, FRAME_BYTES);
+        outputLength += FRAME_BYTES;
+        keptFrames++;
+    }
+
+    private void addGap(long fedFrame, long offsetFrames) {
+        if (gapCount == gapFedFrame.length) {
+            long[] fed = new long[gapCount * 2];
+            long[] offsets = new long[gapCount * 2];
+            System.arraycopy(gapFedFrame, 0, fed, 0, gapCount);
+            System.arraycopy(gapOffsetFrames, 0, offsets, 0, gapCount);
+            gapFedFrame = fed;
+            gapOffsetFrames = offsets;
+        }
+        gapFedFrame[gapCount] = fedFrame;
+        gapOffsetFrames[gapCount] = offsetFrames;
+        gapCount++;
+    }
+
+    private boolean isSpeech(byte[] pcm) {
+        double sumSquares = 0;
+        int zeroCrossings = 0;
+        int previous = 0;
+        for (int i = 0; i < FRAME_BYTES; i += 2) {
+            int sample = (short) ((pcm[i] & 0xff) | (pcm[i + 1] << 8));
+            sumSquares += (double) sample * sample;
+            if (i > 0 && (sample >= 0) != (previous >= 0)) {
+                zeroCrossings++;
+            }
+            previous = sample;
+        }
+        double rms = Math.sqrt(sumSquares / FRAME_SAMPLES);
+        double zcr = (double) zeroCrossings / FRAME_SAMPLES;
+
+        boolean speech = rms > Math.max(MIN_SPEECH_RMS, noiseFloor * NOISE_FLOOR_FACTOR) && zcr < MAX_SPEECH_ZCR;
+        if (rms < noiseFloor) {
+            noiseFloor = noiseFloor * 0.9 + rms * 0.1;
+        } else if (!speech) {
+            noiseFloor += (rms - noiseFloor) * 0.002;
+        }
+        return speech;
+    }
+
+    /** Maps a timestamp produced by the recognizer (fed audio time) back to source audio time. */
+    public double toSourceSeconds(double fedSeconds) {
+        long fedFrame = (long) (fedSeconds * 1000 / FRAME_MS);
+        int lo = 0;
+        int hi = gapCount - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (gapFedFrame[mid] <= fedFrame) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found < 0 ? fedSeconds : fedSeconds + gapOffsetFrames[found] * FRAME_MS / 1000.0;
+    }
+
+    public long getSkippedMs() {
+        return (sourceFrames - keptFrames) * FRAME_MS;
+    }
+
+    public long getProcessedMs() {
+        return sourceFrames * FRAME_MS;
+    }
+}
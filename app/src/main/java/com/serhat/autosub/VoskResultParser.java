@@ -0,0 +1,348 @@
+package com.serhat.autosub;
+
+import android.util.Log;
+
+/**
+ * Pull parser for the JSON the Vosk recognizer returns. Words are decoded straight from the result
+ * string into a reusable char buffer and appended to a {@link WordTimeline}, so no JSON object tree
+ * or per-word strings are created. An instance keeps scratch state and must not be shared between
+ * threads.
+ *
+ * <p>Numbers with up to 15 significant digits are converted exactly as {@link Double#parseDouble}
+ * would, so word times and cue segmentation match what {@code org.json} produced.
+ */
+public class VoskResultParser {
+    private static final String TAG = "VoskResultParser";
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private String json;
+    private int pos;
+    private char[] key = new char[16];
+    private int keyLength;
+    private char[] text = new char[64];
+    private int textLength;
+
+    /**
+     * Appends every entry of the {@code "result"} array to {@code timeline} and returns the number
+     * of words added. A malformed word ends parsing, keeping the words before it.
+     */
+    public int parseWords(String result, WordTimeline timeline) {
+        int before = timeline.size();
+        try {
+            begin(result);
+            expect('{');
+            if (tryConsume('}')) {
+                return 0;
+            }
+            do {
+                readKey();
+                expect(':');
+                if (keyEquals("result")) {
+                    parseWordArray(timeline);
+                } else {
+                    skipValue();
+                }
+            } while (tryConsume(','));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Error processing recognition result", e);
+        } finally {
+            json = null;
+        }
+        return timeline.size() - before;
+    }
+
+    /** Returns the {@code "partial"} text of a partial result, or an empty string. */
+    public String parsePartial(String partialResult) {
+        try {
+            begin(partialResult);
+            expect('{');
+            if (tryConsume('}')) {
+                return "";
+            }
+            do {
+                readKey();
+                expect(':');
+                if (keyEquals("partial") && peek() == '"') {
+                    readString(false);
+                    return new String(text, 0, textLength);
+                }
+                skipValue();
+            } while (tryConsume(','));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Error processing partial result", e);
+        } finally {
+            json = null;
+        }
+        return "";
+    }
+
+    private void begin(String input) {
+        json = input;
+        pos = 0;
+    }
+
+    private void parseWordArray(WordTimeline timeline) {
+        if (peek() != '[') {
+            skipValue();
+            return;
+        }
+        pos++;
+        if (tryConsume(']')) {
+            return;
+        }
+        do {
+            expect('{');
+            boolean hasWord = false;
+            double start = Double.NaN;
+            double end = Double.NaN;
+            double conf = 1.0;
+            if (!tryConsume('}')) {
+                do {
+                    readKey();
+                    expect(':');
+                    if (keyEquals("word")) {
+                        if (peek() != '"') {
+                            throw malformed();
+                        }
+                        readString(false);
+                        hasWord = true;
+                    } else if (keyEquals("start")) {
+                        start = readNumber();
+                    } else if (keyEquals("end")) {
+                        end = readNumber();
+                    } else if (keyEquals("conf")) {
+                        conf = readNumber();
+                    } else {
+                        skipValue();
+                    }
+                } while (tryConsume(','));
+                expect('}');
+            }
+            if (!hasWord || Double.isNaN(start) || Double.isNaN(end)) {
+                throw malformed();
+            }
+            timeline.addWord(text, 0, textLength, (int) (start * 1000), (int) (end * 1000), (float) conf);
+        } while (tryConsume(','));
+        expect(']');
+    }
+
+    private void readKey() {
+        if (peek() != '"') {
+            throw malformed();
+        }
+        readString(true);
+    }
+
+    private boolean keyEquals(String name) {
+        if (keyLength != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; i++) {
+            if (key[i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Decodes the string at {@link #pos} into {@link #key} or {@link #text}. */
+    private void readString(boolean intoKey) {
+        pos++;
+        char[] out = intoKey ? key : text;
+        int length = 0;
+        while (true) {
+            if (pos >= json.length()) {
+                throw malformed();
+            }
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\') {
+                if (pos >= json.length()) {
+                    throw malformed();
+                }
+                char escaped = json.charAt(pos++);
+                switch (escaped) {
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    case 't': c = '\t'; break;
+                    case 'u':
+                        c = readHexChar();
+                        break;
+                    default: c = escaped;
+                }
+            }
+            if (length == out.length) {
+                char[] grown = new char[out.length * 2];
+                System.arraycopy(out, 0, grown, 0, length);
+                out = grown;
+                if (intoKey) {
+                    key = grown;
+                } else {
+                    text = grown;
+                }
+            }
+            out[length++] = c;
+        }
+        if (intoKey) {
+            keyLength = length;
+        } else {
+            textLength = length;
+        }
+    }
+
+    private char readHexChar() {
+        if (pos + 4 > json.length()) {
+            throw malformed();
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(json.charAt(pos++), 16);
+            if (digit < 0) {
+                throw malformed();
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    private double readNumber() {
+        skipWhitespace();
+        int start = pos;
+        boolean negative = tryChar('-');
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                if (digits <= 15) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (fraction) {
+                        scale++;
+                    }
+                } else if (!fraction) {
+                    scale--;
+                }
+                pos++;
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (pos == start || (negative && pos == start + 1)) {
+            throw malformed();
+        }
+        if (pos < json.length() && (json.charAt(pos) == 'e' || json.charAt(pos) == 'E')) {
+            pos++;
+            tryChar('+');
+            tryChar('-');
+            while (pos < json.length() && Character.isDigit(json.charAt(pos))) {
+                pos++;
+            }
+            return Double.parseDouble(json.substring(start, pos));
+        }
+        if (digits > 15 || scale < 0 || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(json.substring(start, pos));
+        }
+        // Both operands are exact doubles, so the single rounding matches parseDouble.
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    /** Skips one value of any type, including nested objects and arrays. */
+    private void skipValue() {
+        skipWhitespace();
+        if (pos >= json.length()) {
+            throw malformed();
+        }
+        char c = json.charAt(pos);
+        if (c == '"') {
+            skipString();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = json.charAt(pos);
+                if (c == '"') {
+                    skipString();
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                pos++;
+            } while (depth > 0 && pos < json.length());
+            if (depth > 0) {
+                throw malformed();
+            }
+        } else {
+            while (pos < json.length() && ",}] \t\r\n".indexOf(json.charAt(pos)) < 0) {
+                pos++;
+            }
+        }
+    }
+
+    private void skipString() {
+        pos++;
+        while (pos < json.length()) {
+            char c = json.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return;
+            }
+        }
+        throw malformed();
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && json.charAt(pos) <= ' ') {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        skipWhitespace();
+        if (pos >= json.length()) {
+            throw malformed();
+        }
+        return json.charAt(pos);
+    }
+
+    private boolean tryChar(char c) {
+        if (pos < json.length() && json.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean tryConsume(char c) {
+        skipWhitespace();
+        return tryChar(c);
+    }
+
+    private void expect(char c) {
+        if (!tryConsume(c)) {
+            throw malformed();
+        }
+    }
+
+    private IllegalArgumentException malformed() {
+        return new IllegalArgumentException("Malformed recognizer result at offset " + pos);
+    }
+}
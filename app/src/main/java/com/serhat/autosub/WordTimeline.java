@@ -0,0 +1,217 @@
+package com.serhat.autosub;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Columnar store for recognized words: millisecond start/end and confidence live in primitive
+ * arrays and the word text in one shared char buffer, so an hour-long transcript costs a few
+ * bytes per word instead of several objects. Utterance boundaries reported by the recognizer are
+ * kept so cues can be segmented exactly as they were when recognized.
+ */
+public class WordTimeline {
+    private int size;
+    private int[] starts;
+    private int[] ends;
+    private float[] confidences;
+    private int[] textStarts;
+    private char[] chars;
+    private int charLength;
+    private int[] utteranceEnds;
+    private int utteranceCount;
+
+    public WordTimeline() {
+        this(256);
+    }
+
+    public WordTimeline(int wordCapacity) {
+        wordCapacity = Math.max(16, wordCapacity);
+        starts = new int[wordCapacity];
+        ends = new int[wordCapacity];
+        confidences = new float[wordCapacity];
+        textStarts = new int[wordCapacity + 1];
+        chars = new char[wordCapacity * 6];
+        utteranceEnds = new int[Math.max(16, wordCapacity / 8)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+        charLength = 0;
+        utteranceCount = 0;
+    }
+
+    public int addWord(char[] text, int offset, int length, int startMs, int endMs, float confidence) {
+        ensureWordCapacity(size + 1);
+        ensureCharCapacity(charLength + length);
+        System.arraycopy(text, offset, chars, charLength, length);
+        textStarts[size] = charLength;
+        charLength += length;
+        textStarts[size + 1] = charLength;
+        starts[size] = startMs;
+        ends[size] = endMs;
+        confidences[size] = confidence;
+        return size++;
+    }
+
+    public int addWord(String text, int startMs, int endMs, float confidence) {
+        return addWord(text.toCharArray(), 0, text.length(), startMs, endMs, confidence);
+    }
+
+    public int addWord(WordTimeline source, int index, int startMs, int endMs) {
+        return addWord(source.chars, source.textStarts[index], source.getWordLength(index), startMs, endMs,
+                source.confidences[index]);
+    }
+
+    /** Closes the current utterance; a no-op if no word was added since the previous boundary. */
+    public void endUtterance() {
+        int lastEnd = utteranceCount == 0 ? 0 : utteranceEnds[utteranceCount - 1];
+        if (size == lastEnd) {
+            return;
+        }
+        if (utteranceCount == utteranceEnds.length) {
+            utteranceEnds = grow(utteranceEnds, utteranceCount * 2);
+        }
+        utteranceEnds[utteranceCount++] = size;
+    }
+
+    /** Appends every word and utterance boundary of {@code other}. */
+    public void append(WordTimeline other) {
+        int utterance = 0;
+        for (int i = 0; i < other.size; i++) {
+            addWord(other, i, other.starts[i], other.ends[i]);
+            if (utterance < other.utteranceCount && other.utteranceEnds[utterance] == i + 1) {
+                endUtterance();
+                utterance++;
+            }
+        }
+        endUtterance();
+    }
+
+    public void setTimes(int index, int startMs, int endMs) {
+        starts[index] = startMs;
+        ends[index] = endMs;
+    }
+
+    public int getStartMs(int index) {
+        return starts[index];
+    }
+
+    public int getEndMs(int index) {
+        return ends[index];
+    }
+
+    public float getConfidence(int index) {
+        return confidences[index];
+    }
+
+    public int getWordLength(int index) {
+        return textStarts[index + 1] - textStarts[index];
+    }
+
+    public String getWord(int index) {
+        return new String(chars, textStarts[index], getWordLength(index));
+    }
+
+    public void appendWord(int index, StringBuilder out) {
+        out.append(chars, textStarts[index], getWordLength(index));
+    }
+
+    public char getWordChar(int index, int position) {
+        return chars[textStarts[index] + position];
+    }
+
+    public int utteranceCount() {
+        return utteranceCount;
+    }
+
+    public int utteranceStart(int utterance) {
+        return utterance == 0 ? 0 : utteranceEnds[utterance - 1];
+    }
+
+    public int utteranceEnd(int utterance) {
+        return utteranceEnds[utterance];
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(charLength);
+        out.writeInt(utteranceCount);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(starts[i]);
+            out.writeInt(ends[i]);
+            out.writeFloat(confidences[i]);
+            out.writeInt(textStarts[i + 1]);
+        }
+        for (int i = 0; i < charLength; i++) {
+            out.writeChar(chars[i]);
+        }
+        for (int i = 0; i < utteranceCount; i++) {
+            out.writeInt(utteranceEnds[i]);
+        }
+    }
+
+    public static WordTimeline readFrom(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        int charLength = in.readInt();
+        int utteranceCount = in.readInt();
+        if (size < 0 || charLength < 0 || utteranceCount < 0 || utteranceCount > size) {
+            throw new IOException("Corrupt word timeline");
+        }
+        WordTimeline timeline = new WordTimeline(size);
+        timeline.ensureCharCapacity(charLength);
+        for (int i = 0; i < size; i++) {
+            timeline.starts[i] = in.readInt();
+            timeline.ends[i] = in.readInt();
+            timeline.confidences[i] = in.readFloat();
+            timeline.textStarts[i + 1] = in.readInt();
+        }
+        for (int i = 0; i < charLength; i++) {
+            timeline.chars[i] = in.readChar();
+        }
+        timeline.ensureUtteranceCapacity(utteranceCount);
+        for (int i = 0; i < utteranceCount; i++) {
+            timeline.utteranceEnds[i] = in.readInt();
+        }
+        timeline.size = size;
+        timeline.charLength = charLength;
+        timeline.utteranceCount = utteranceCount;
+        return timeline;
+    }
+
+    private void ensureWordCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int newLength = Math.max(capacity, starts.length * 2);
+            starts = grow(starts, newLength);
+            ends = grow(ends, newLength);
+            textStarts = grow(textStarts, newLength + 1);
+            float[] newConfidences = new float[newLength];
+            System.arraycopy(confidences, 0, newConfidences, 0, size);
+            confidences = newConfidences;
+        }
+    }
+
+    private void ensureCharCapacity(int capacity) {
+        if (capacity > chars.length) {
+            char[] newChars = new char[Math.max(capacity, chars.length * 2)];
+            System.arraycopy(chars, 0, newChars, 0, charLength);
+            chars = newChars;
+        }
+    }
+
+    private void ensureUtteranceCapacity(int capacity) {
+        if (capacity > utteranceEnds.length) {
+            utteranceEnds = grow(utteranceEnds, capacity);
+        }
+    }
+
+    private static int[] grow(int[] array, int newLength) {
+        int[] grown = new int[newLength];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -0,0 +1,78 @@
+package com.serhat.autosub;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BurnInRendererTest {
+
+    private static List<Double> keyframesEvery(double interval, double duration) {
+        List<Double> keyframes = new ArrayList<>();
+        for (double t = 0; t < duration; t += interval) {
+            keyframes.add(t);
+        }
+        return keyframes;
+    }
+
+    private static String describe(List<BurnInRenderer.Range> ranges) {
+        StringBuilder sb = new StringBuilder();
+        for (BurnInRenderer.Range range : ranges) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(range.burn ? "burn " : "copy ").append(range.start).append('-').append(range.end);
+        }
+        return sb.toString();
+    }
+
+    private static SubtitleGenerator.SubtitleEntry cue(int startMs, int endMs) {
+        return new SubtitleGenerator.SubtitleEntry(0, startMs, endMs, "cue");
+    }
+
+    @Test
+    public void splitAtKeyframes_cutsOnFirstKeyframeAfterEachTarget() {
+        List<BurnInRenderer.Range> ranges = BurnInRenderer.splitAtKeyframes(keyframesEvery(2, 100), 100, 4);
+        assertEquals("burn 0.0-26.0, burn 26.0-50.0, burn 50.0-76.0, burn 76.0-100.0", describe(ranges));
+    }
+
+    @Test
+    public void splitAtKeyframes_skipsCutsThatLeaveShortRanges() {
+        assertEquals("burn 0.0-45.0, burn 45.0-100.0",
+                describe(BurnInRenderer.splitAtKeyframes(Arrays.asList(0.0, 45.0), 100, 4)));
+        assertEquals("burn 0.0-100.0",
+                describe(BurnInRenderer.splitAtKeyframes(Arrays.asList(0.0, 95.0), 100, 2)));
+        // Too short for more than one range of the minimum length.
+        assertEquals("burn 0.0-15.0",
+                describe(BurnInRenderer.splitAtKeyframes(keyframesEvery(1, 15), 15, 8)));
+        assertEquals("burn 0.0-30.0",
+                describe(BurnInRenderer.splitAtKeyframes(new ArrayList<Double>(), 30, 3)));
+    }
+
+    @Test
+    public void classifyGops_burnsEveryGopACueCrosses() {
+        List<SubtitleGenerator.SubtitleEntry> cues = Arrays.asList(
+                cue(13000, 17000),
+                cue(5900, 6100),   // crosses the keyframe at 6 s
+                cue(1000, 1500),
+                cue(9000, 10000)); // ends exactly on the keyframe at 10 s
+        List<BurnInRenderer.Range> runs = BurnInRenderer.classifyGops(keyframesEvery(2, 20), 20, cues);
+        assertEquals("burn 0.0-2.0, copy 2.0-4.0, burn 4.0-10.0, copy 10.0-12.0, burn 12.0-18.0, copy 18.0-20.0",
+                describe(runs));
+    }
+
+    @Test
+    public void classifyGops_coversWholeDurationFromTime0() {
+        // The first keyframe is a little after 0 and one keyframe is listed twice.
+        List<Double> keyframes = Arrays.asList(0.04, 4.0, 4.0, 8.0);
+        List<BurnInRenderer.Range> runs = BurnInRenderer.classifyGops(keyframes, 12,
+                Arrays.asList(cue(8500, 9000)));
+        assertEquals("copy 0.0-8.0, burn 8.0-12.0", describe(runs));
+
+        assertEquals("copy 0.0-12.0", describe(BurnInRenderer.classifyGops(keyframes, 12,
+                new ArrayList<SubtitleGenerator.SubtitleEntry>())));
+    }
+}
@@ -0,0 +1,267 @@
+package com.serhat.autosub;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CueEditorTest {
+
+    private static SubtitleGenerator.SubtitleEntry cue(int i) {
+        return new SubtitleGenerator.SubtitleEntry(i + 1, i * 1000, i * 1000 + 900, "cue " + i + " two words",
+                i * 4, 4);
+    }
+
+    private static List<String> snapshot(List<SubtitleGenerator.SubtitleEntry> cues) {
+        List<String> snapshot = new ArrayList<>(cues.size());
+        for (SubtitleGenerator.SubtitleEntry entry : cues) {
+            snapshot.add(entry.getId() + "|" + entry.getStartMs() + "|" + entry.getEndMs() + "|" + entry.getText()
+                    + "|" + entry.getFirstWord() + "|" + entry.getWordCount());
+        }
+        return snapshot;
+    }
+
+    private static void randomEdit(CueEditor editor, Random random, int step) {
+        CueList cues = editor.getCues();
+        int size = cues.size();
+        switch (size == 0 ? 1 : random.nextInt(6)) {
+            case 0:
+                editor.editText(random.nextInt(size), "edited " + step);
+                break;
+            case 1:
+                editor.insert(random.nextInt(size + 1), new SubtitleGenerator.SubtitleEntry(0, step, step + 10,
+                        "inserted " + step));
+                break;
+            case 2:
+                editor.delete(random.nextInt(size));
+                break;
+            case 3:
+                Set<Integer> positions = new HashSet<>();
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    positions.add(random.nextInt(size));
+                }
+                editor.deleteAll(positions);
+                break;
+            case 4:
+                int from = random.nextInt(size);
+                editor.merge(from, Math.min(size - 1, from + 1 + random.nextInt(3)));
+                break;
+            default:
+                int index = random.nextInt(size);
+                editor.split(index, 1 + random.nextInt(Math.max(1, cues.get(index).getText().length() - 1)));
+                break;
+        }
+    }
+
+    @Test
+    public void cueList_matchesArrayList() {
+        Random random = new Random(22);
+        CueList cues = new CueList();
+        List<SubtitleGenerator.SubtitleEntry> reference = new ArrayList<>();
+        for (int step = 0; step < 5000; step++) {
+            int op = reference.isEmpty() ? 0 : random.nextInt(5);
+            if (op == 0) {
+                int index = random.nextInt(reference.size() + 1);
+                SubtitleGenerator.SubtitleEntry entry = cue(step);
+                cues.add(index, entry);
+                reference.add(index, entry);
+            } else if (op == 1) {
+                int index = random.nextInt(reference.size() + 1);
+                List<SubtitleGenerator.SubtitleEntry> batch = Arrays.asList(cue(step), cue(step + 1));
+                cues.addAll(index, batch);
+                reference.addAll(index, batch);
+            } else if (op == 2) {
+                int index = random.nextInt(reference.size());
+                assertSame(reference.remove(index), cues.remove(index));
+            } else if (op == 3) {
+                int from = random.nextInt(reference.size());
+                int to = from + random.nextInt(Math.min(5, reference.size() - from) + 1);
+                cues.subList(from, to).clear();
+                reference.subList(from, to).clear();
+            } else {
+                int index = random.nextInt(reference.size());
+                SubtitleGenerator.SubtitleEntry entry = cue(step);
+                assertSame(reference.set(index, entry), cues.set(index, entry));
+            }
+            assertEquals(reference.size(), cues.size());
+            if (!reference.isEmpty()) {
+                int index = random.nextInt(reference.size());
+                assertSame(reference.get(index), cues.get(index));
+            }
+        }
+        Iterator<SubtitleGenerator.SubtitleEntry> iterator = cues.iterator();
+        for (SubtitleGenerator.SubtitleEntry entry : reference) {
+            assertSame(entry, iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void undoAndRedo_roundTripRandomEdits() {
+        Random random = new Random(2022);
+        List<SubtitleGenerator.SubtitleEntry> initial = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            initial.add(cue(i));
+        }
+        CueEditor editor = new CueEditor(new CueList(initial));
+        List<String> before = snapshot(editor.getCues());
+
+        int edits = 150;
+        for (int step = 0; step < edits; step++) {
+            randomEdit(editor, random, step);
+        }
+        List<String> after = snapshot(editor.getCues());
+
+        while (editor.undo()) {
+            // Undo everything.
+        }
+        assertEquals(before, snapshot(editor.getCues()));
+        assertFalse(editor.canUndo());
+
+        while (editor.redo()) {
+            // Redo everything.
+        }
+        assertEquals(after, snapshot(editor.getCues()));
+        assertFalse(editor.canRedo());
+    }
+
+    @Test
+    public void listener_mirrorsEveryChange() {
+        Random random = new Random(7);
+        List<SubtitleGenerator.SubtitleEntry> initial = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            initial.add(cue(i));
+        }
+        CueEditor editor = new CueEditor(new CueList(initial));
+        final List<SubtitleGenerator.SubtitleEntry> mirror = new ArrayList<>(initial);
+        final int[] finished = {0};
+        editor.addChangeListener(new CueEditor.ChangeListener() {
+            @Override
+            public void onCuesRemoved(int from, int count) {
+                mirror.subList(from, from + count).clear();
+            }
+
+            @Override
+            public void onCuesInserted(int index, List<SubtitleGenerator.SubtitleEntry> entries) {
+                mirror.addAll(index, entries);
+            }
+
+            @Override
+            public void onCueChanged(int index, SubtitleGenerator.SubtitleEntry entry) {
+                mirror.set(index, entry);
+            }
+
+            @Override
+            public void onEditFinished() {
+                finished[0]++;
+            }
+        });
+
+        for (int step = 0; step < 500; step++) {
+            int action = random.nextInt(4);
+            int finishedBefore = finished[0];
+            if (action == 0) {
+                assertEquals(editor.undo() ? finishedBefore + 1 : finishedBefore, finished[0]);
+            } else if (action == 1) {
+                assertEquals(editor.redo() ? finishedBefore + 1 : finishedBefore, finished[0]);
+            } else {
+                randomEdit(editor, random, step);
+            }
+            assertEquals(snapshot(editor.getCues()), snapshot(mirror));
+        }
+    }
+
+    @Test
+    public void deleteAll_reportsOneRangePerRun() {
+        List<SubtitleGenerator.SubtitleEntry> initial = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            initial.add(cue(i));
+        }
+        CueEditor editor = new CueEditor(new CueList(initial));
+        final List<String> changes = new ArrayList<>();
+        editor.addChangeListener(new CueEditor.ChangeListener() {
+            @Override
+            public void onCuesRemoved(int from, int count) {
+                changes.add("remove " + from + "+" + count);
+            }
+
+            @Override
+            public void onCuesInserted(int index, List<SubtitleGenerator.SubtitleEntry> entries) {
+                changes.add("insert " + index + "+" + entries.size());
+            }
+
+            @Override
+            public void onCueChanged(int index, SubtitleGenerator.SubtitleEntry entry) {
+                changes.add("change " + index);
+            }
+
+            @Override
+            public void onEditFinished() {
+                changes.add("finish");
+            }
+        });
+
+        editor.deleteAll(new HashSet<>(Arrays.asList(8, 2, 3, 7, 4, 0)));
+        assertEquals(Arrays.asList("remove 7+2", "remove 2+3", "remove 0+1", "finish"), changes);
+        assertEquals(Arrays.asList(initial.get(1), initial.get(5), initial.get(6), initial.get(9)),
+                new ArrayList<>(editor.getCues()));
+
+        changes.clear();
+        assertTrue(editor.undo());
+        assertEquals(Arrays.asList("insert 0+1", "insert 2+3", "insert 7+2", "finish"), changes);
+        assertEquals(initial, new ArrayList<>(editor.getCues()));
+    }
+
+    @Test
+    public void cueList_floorStartMatchesLinearScan() {
+        Random random = new Random(6);
+        List<SubtitleGenerator.SubtitleEntry> entries = new ArrayList<>();
+        int startMs = 0;
+        for (int i = 0; i < 500; i++) {
+            // Equal starts are allowed; the last of them is the floor.
+            startMs += random.nextInt(4) == 0 ? 0 : random.nextInt(3000);
+            entries.add(new SubtitleGenerator.SubtitleEntry(i + 1, startMs, startMs + 500, "cue"));
+        }
+        CueList cues = new CueList(entries);
+        for (int t = -10; t < startMs + 10; t += 97) {
+            int expected = -1;
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).getStartMs() <= t) {
+                    expected = i;
+                }
+            }
+            assertEquals(expected, cues.floorStart(t));
+        }
+        assertEquals(-1, new CueList().floorStart(0));
+    }
+
+    @Test
+    public void mergeAndSplit_keepWordRanges() {
+        CueEditor editor = new CueEditor(new CueList(Arrays.asList(cue(0), cue(1), cue(2))));
+        assertTrue(editor.merge(0, 1));
+        SubtitleGenerator.SubtitleEntry merged = editor.getCues().get(0);
+        assertEquals(2, editor.getCues().size());
+        assertEquals("cue 0 two words cue 1 two words", merged.getText());
+        assertEquals(1900, merged.getEndMs());
+        assertEquals(0, merged.getFirstWord());
+        assertEquals(8, merged.getWordCount());
+
+        assertTrue(editor.split(0, "cue 0 two words".length()));
+        assertEquals(3, editor.getCues().size());
+        assertEquals("cue 0 two words", editor.getCues().get(0).getText());
+        assertEquals(4, editor.getCues().get(0).getWordCount());
+        assertEquals("cue 1 two words", editor.getCues().get(1).getText());
+        assertEquals(4, editor.getCues().get(1).getFirstWord());
+        assertEquals(4, editor.getCues().get(1).getWordCount());
+
+        assertFalse(editor.merge(1, 1));
+        assertFalse(editor.split(0, 0));
+    }
+}
@@ -0,0 +1,96 @@
+package com.serhat.autosub;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CueTimeIndexTest {
+
+    private static CueList cues(int count, long seed) {
+        Random random = new Random(seed);
+        List<SubtitleGenerator.SubtitleEntry> entries = new ArrayList<>();
+        int startMs = 0;
+        for (int i = 0; i < count; i++) {
+            // Gaps between cues, and now and then two cues starting together.
+            startMs += random.nextInt(5) == 0 ? 0 : 200 + random.nextInt(3000);
+            entries.add(new SubtitleGenerator.SubtitleEntry(i + 1, startMs, startMs + 100 + random.nextInt(2500),
+                    "cue " + i));
+        }
+        return new CueList(entries);
+    }
+
+    /** The last cue starting at or before {@code positionMs}, if it still covers it. */
+    private static int linearFind(CueList cues, long positionMs) {
+        int floor = -1;
+        for (int i = 0; i < cues.size(); i++) {
+            if (cues.get(i).getStartMs() <= positionMs) {
+                floor = i;
+            }
+        }
+        return floor >= 0 && positionMs < cues.get(floor).getEndMs() ? floor : -1;
+    }
+
+    @Test
+    public void find_stepsThroughPlayback() {
+        CueList cues = cues(300, 6);
+        CueTimeIndex index = new CueTimeIndex();
+        index.setCues(cues);
+        long endMs = cues.get(cues.size() - 1).getEndMs() + 500;
+        for (long t = -100; t < endMs; t += 40) {
+            assertEquals("at " + t, linearFind(cues, t), index.find(t));
+        }
+    }
+
+    @Test
+    public void find_fallsBackToSearchAfterSeeks() {
+        CueList cues = cues(500, 7);
+        CueTimeIndex index = new CueTimeIndex();
+        index.setCues(cues);
+        Random random = new Random(60);
+        long endMs = cues.get(cues.size() - 1).getEndMs() + 500;
+        for (int i = 0; i < 5000; i++) {
+            long t = random.nextInt((int) endMs + 1000) - 500;
+            assertEquals("at " + t, linearFind(cues, t), index.find(t));
+        }
+    }
+
+    @Test
+    public void find_seesAppendedAndEditedCuesWithoutReindexing() {
+        CueList cues = new CueList(Arrays.asList(
+                new SubtitleGenerator.SubtitleEntry(1, 0, 1000, "one"),
+                new SubtitleGenerator.SubtitleEntry(2, 2000, 3000, "two")));
+        CueTimeIndex index = new CueTimeIndex();
+        index.setCues(cues);
+        assertEquals(1, index.find(2500));
+        assertEquals(-1, index.find(5500));
+
+        cues.addAll(cues.size(), Arrays.asList(
+                new SubtitleGenerator.SubtitleEntry(3, 4000, 5000, "three"),
+                new SubtitleGenerator.SubtitleEntry(4, 5000, 6000, "four")));
+        assertEquals(4, index.size());
+        assertEquals(3, index.find(5500));
+        assertEquals(2, index.find(4000));
+
+        cues.remove(0);
+        assertEquals(0, index.find(2500));
+        assertEquals(-1, index.find(500));
+        assertEquals(2, index.find(5999));
+    }
+
+    @Test
+    public void find_withoutCues() {
+        CueTimeIndex index = new CueTimeIndex();
+        assertEquals(-1, index.find(0));
+        index.setCues(new CueList());
+        assertEquals(-1, index.find(1000));
+        index.setCues(cues(10, 1));
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(-1, index.find(1000));
+    }
+}
@@ -0,0 +1,164 @@
+package com.serhat.autosub;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EditJournalTest {
+    private static final String VIDEO = "content://media/video/23";
+
+    private final TaskScheduler scheduler = new TaskScheduler();
+
+    @After
+    public void shutDown() {
+        scheduler.shutdown();
+    }
+
+    private static CueList cues(int count) {
+        List<SubtitleGenerator.SubtitleEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new SubtitleGenerator.SubtitleEntry(i + 1, i * 1000, i * 1000 + 900,
+                    "cue " + i + " caf\u00e9", i * 2, 2));
+        }
+        return new CueList(entries);
+    }
+
+    private static List<String> snapshot(List<SubtitleGenerator.SubtitleEntry> cues) {
+        List<String> snapshot = new ArrayList<>(cues.size());
+        for (SubtitleGenerator.SubtitleEntry entry : cues) {
+            snapshot.add(entry.getStartMs() + "|" + entry.getEndMs() + "|" + entry.getText()
+                    + "|" + entry.getFirstWord() + "|" + entry.getWordCount());
+        }
+        return snapshot;
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("edits", ".journal");
+        file.deleteOnExit();
+        assertTrue(file.delete());
+        return file;
+    }
+
+    private File copy(byte[] bytes, int length) throws IOException {
+        File file = tempFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes, 0, length);
+        }
+        return file;
+    }
+
+    private List<String> restore(File file) {
+        CueList restored = new EditJournal(file, VIDEO, scheduler).restore();
+        return restored != null ? snapshot(restored) : null;
+    }
+
+    private static void edit(CueEditor editor, int step) {
+        switch (step) {
+            case 0:
+                editor.editText(3, "first edit");
+                break;
+            case 1:
+                editor.delete(0);
+                break;
+            case 2:
+                editor.insert(5, new SubtitleGenerator.SubtitleEntry(0, 5500, 5800, "inserted"));
+                break;
+            case 3:
+                editor.merge(7, 9);
+                break;
+            case 4:
+                editor.split(2, 3);
+                break;
+            case 5:
+                editor.deleteAll(new HashSet<>(Arrays.asList(1, 4, 5, 10)));
+                break;
+            default:
+                editor.undo();
+                break;
+        }
+    }
+
+    @Test
+    public void restore_returnsValidPrefixOfTornOrCorruptJournal() throws IOException {
+        File file = tempFile();
+        CueList cues = cues(20);
+        CueEditor editor = new CueEditor(cues);
+        EditJournal journal = new EditJournal(file, VIDEO, scheduler);
+        editor.addChangeListener(journal);
+        journal.start(cues, false);
+        journal.flush();
+        assertFalse("Unedited cues must not be written", file.exists());
+
+        int edits = 7;
+        List<List<String>> states = new ArrayList<>();
+        long[] lengths = new long[edits];
+        for (int step = 0; step < edits; step++) {
+            edit(editor, step);
+            journal.flush();
+            states.add(snapshot(cues));
+            lengths[step] = file.length();
+        }
+        assertEquals(states.get(edits - 1), restore(file));
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        // A cut inside the base snapshot leaves nothing to restore.
+        assertNull(restore(copy(bytes, (int) lengths[0] - 1)));
+        for (int step = 0; step + 1 < edits; step++) {
+            int recordStart = (int) lengths[step];
+            int recordEnd = (int) lengths[step + 1];
+            for (int cut = recordStart + 1; cut < recordEnd; cut += 5) {
+                assertEquals("cut at " + cut, states.get(step), restore(copy(bytes, cut)));
+            }
+
+            // A flipped payload byte fails the CRC, so the restore stops before that edit.
+            byte[] corrupt = bytes.clone();
+            corrupt[recordStart + 6] ^= 0x10;
+            assertEquals("flip after edit " + step, states.get(step), restore(copy(corrupt, corrupt.length)));
+        }
+    }
+
+    @Test
+    public void restore_ignoresOtherVideosAndMissingFiles() throws IOException {
+        File file = tempFile();
+        assertNull(restore(file));
+
+        CueList cues = cues(3);
+        EditJournal journal = new EditJournal(file, VIDEO, scheduler);
+        journal.start(cues, true);
+        journal.flush();
+        assertEquals(snapshot(cues), restore(file));
+        assertNull(new EditJournal(file, VIDEO + "0", scheduler).restore());
+    }
+
+    @Test
+    public void delete_startsOverFromNextEdit() throws IOException {
+        File file = tempFile();
+        CueList cues = cues(5);
+        CueEditor editor = new CueEditor(cues);
+        EditJournal journal = new EditJournal(file, VIDEO, scheduler);
+        editor.addChangeListener(journal);
+        journal.start(cues, false);
+
+        editor.editText(0, "before delete");
+        journal.flush();
+        assertEquals(1, journal.getEditCount());
+        journal.delete();
+        assertFalse(file.exists());
+
+        editor.delete(1);
+        journal.flush();
+        assertEquals(snapshot(cues), restore(file));
+        assertEquals("before delete", restore(file).get(0).split("\\|")[2]);
+    }
+}
@@ -0,0 +1,78 @@
+package com.serhat.autosub;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParallelRecognizerTest {
+
+    private static String words(WordTimeline timeline) {
+        StringBuilder sb = new StringBuilder();
+        int utterance = 0;
+        for (int i = 0; i < timeline.size(); i++) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(timeline.getWord(i));
+            if (utterance < timeline.utteranceCount() && timeline.utteranceEnd(utterance) == i + 1) {
+                sb.append(" |");
+                utterance++;
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void dropWordsBefore_removesDuplicatesAtSeam() {
+        // The previous chunk kept "the seam" and ended at 60200 ms; this one saw them again.
+        WordTimeline chunk = new WordTimeline();
+        chunk.addWord("the", 59400, 59700, 0.9f);
+        chunk.addWord("seam", 59810, 60190, 0.8f);
+        chunk.addWord("next", 60300, 60600, 1f);
+        chunk.endUtterance();
+        chunk.addWord("later", 61000, 61400, 1f);
+        chunk.endUtterance();
+
+        WordTimeline kept = ParallelRecognizer.dropWordsBefore(chunk, 60200);
+        assertEquals("next | later |", words(kept));
+        assertEquals(60300, kept.getStartMs(0));
+        assertEquals(60600, kept.getEndMs(0));
+        assertEquals(1f, kept.getConfidence(0), 0f);
+    }
+
+    @Test
+    public void dropWordsBefore_dropsWholeUtteranceWithoutLeavingItEmpty() {
+        WordTimeline chunk = new WordTimeline();
+        chunk.addWord("dup", 100, 300, 1f);
+        chunk.addWord("dup2", 300, 500, 1f);
+        chunk.endUtterance();
+        chunk.addWord("fresh", 900, 1100, 1f);
+        chunk.endUtterance();
+
+        WordTimeline kept = ParallelRecognizer.dropWordsBefore(chunk, 600);
+        assertEquals("fresh |", words(kept));
+        assertEquals(1, kept.utteranceCount());
+
+        WordTimeline none = ParallelRecognizer.dropWordsBefore(chunk, 5000);
+        assertEquals(0, none.size());
+        assertEquals(0, none.utteranceCount());
+    }
+
+    @Test
+    public void dropWordsBefore_keepsChunkWithoutOverlap() {
+        WordTimeline chunk = new WordTimeline();
+        chunk.addWord("only", 1000, 1200, 1f);
+        chunk.endUtterance();
+        // A word whose midpoint sits exactly on the previous end is new.
+        assertSame(chunk, ParallelRecognizer.dropWordsBefore(chunk, 1100));
+        assertSame(chunk, ParallelRecognizer.dropWordsBefore(chunk, 0));
+    }
+
+    @Test
+    public void dropWordsBefore_emptyChunk() {
+        WordTimeline empty = new WordTimeline();
+        WordTimeline kept = ParallelRecognizer.dropWordsBefore(empty, 60000);
+        assertEquals(0, kept.size());
+        assertEquals(0, kept.utteranceCount());
+    }
+}
@@ -0,0 +1,112 @@
+package com.serhat.autosub;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SubtitleReaderTest {
+
+    private static long parseTime(String s) {
+        return SubtitleReader.parseTime(s, 0, s.length());
+    }
+
+    private static List<SubtitleGenerator.SubtitleEntry> readAll(String content) throws IOException {
+        List<SubtitleGenerator.SubtitleEntry> cues = new ArrayList<>();
+        try (SubtitleReader reader = new SubtitleReader(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)))) {
+            while (reader.read(cues, 2) > 0) {
+                // Small batches also cover numbering across calls.
+            }
+        }
+        return cues;
+    }
+
+    private static void assertCue(SubtitleGenerator.SubtitleEntry cue, int number, int startMs, int endMs,
+                                  String text) {
+        assertEquals(number, cue.getNumber());
+        assertEquals(startMs, cue.getStartMs());
+        assertEquals(endMs, cue.getEndMs());
+        assertEquals(text, cue.getText());
+    }
+
+    @Test
+    public void parseTime_acceptsSrtVttAndAssVariants() {
+        assertEquals(3723456, parseTime("01:02:03,456"));
+        assertEquals(3723456, parseTime("01:02:03.456"));
+        assertEquals(62500, parseTime("01:02.5"));
+        assertEquals(3723450, parseTime("1:02:03.45"));
+        assertEquals(3723456, parseTime("01:02:03.4567"));
+        assertEquals(360000000L, parseTime("100:00:00,000"));
+        assertEquals(1000, parseTime("  00:00:01,000 "));
+        assertEquals(61000, parseTime("00:01:01"));
+    }
+
+    @Test
+    public void parseTime_rejectsNonTimes() {
+        assertEquals(-1, parseTime(""));
+        assertEquals(-1, parseTime("12"));
+        assertEquals(-1, parseTime("12.5"));
+        assertEquals(-1, parseTime("abc"));
+        assertEquals(-1, parseTime("1:2:3:4"));
+        assertEquals(-1, parseTime("00:00:01,5x"));
+        assertEquals(-1, parseTime(":01:02"));
+    }
+
+    @Test
+    public void srt_splitsCueThatRunsIntoTheNext() throws IOException {
+        List<SubtitleGenerator.SubtitleEntry> cues = readAll("1\r\n00:00:01,000 --> 00:00:02,000\r\nHello\r\n"
+                + "there\r\n2\r\n00:00:03,000 --> 00:00:04,500\r\nWorld\r\n\r\n"
+                + "3\r\n00:00:05,000 --> 00:00:06,000\r\n2 apples\r\n");
+        assertEquals(3, cues.size());
+        assertCue(cues.get(0), 1, 1000, 2000, "Hello\nthere");
+        assertCue(cues.get(1), 2, 3000, 4500, "World");
+        assertCue(cues.get(2), 3, 5000, 6000, "2 apples");
+    }
+
+    @Test
+    public void srt_skipsBlocksWithoutTiming() throws IOException {
+        List<SubtitleGenerator.SubtitleEntry> cues = readAll("\uFEFF1\nnot a timing line\nlost text\n\n"
+                + "2\n00:00:01,000 --> 00:00:00,500\nclamped\n\n");
+        assertEquals(1, cues.size());
+        assertCue(cues.get(0), 1, 1000, 1000, "clamped");
+    }
+
+    @Test
+    public void vtt_skipsHeaderNotesAndCueSettings() throws IOException {
+        List<SubtitleGenerator.SubtitleEntry> cues = readAll("WEBVTT - title\n\nNOTE a comment\nspanning lines\n\n"
+                + "intro\n00:01.000 --> 00:02.500 align:start position:10%\nFirst\n\n"
+                + "01:00:00.000 --> 01:00:01.000\nSecond\n");
+        assertEquals(2, cues.size());
+        assertCue(cues.get(0), 1, 1000, 2500, "First");
+        assertCue(cues.get(1), 2, 3600000, 3601000, "Second");
+    }
+
+    @Test
+    public void ass_keepsCommasInTextAndStripsOverrides() throws IOException {
+        List<SubtitleGenerator.SubtitleEntry> cues = readAll("[Script Info]\nTitle: test\n\n"
+                + "[V4+ Styles]\nFormat: Name, Fontname\nStyle: Default,Arial\n\n"
+                + "[Events]\nFormat: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text\n"
+                + "Comment: 0,0:00:00.00,0:00:01.00,Default,,0,0,0,,skipped\n"
+                + "Dialogue: 0,0:00:01.50,0:00:03.25,Default,,0,0,0,,{\\b1}Well, hello,\\Nworld{\\b0}\n"
+                + "Dialogue: 0,0:00:04.00,0:00:05.00,Default,,0,0,0,,a\\hb \\{literal\\}\n");
+        assertEquals(2, cues.size());
+        assertCue(cues.get(0), 1, 1500, 3250, "Well, hello,\nworld");
+        assertCue(cues.get(1), 2, 4000, 5000, "a b {literal}");
+    }
+
+    @Test
+    public void ass_followsReorderedFormatLine() throws IOException {
+        List<SubtitleGenerator.SubtitleEntry> cues = readAll("[Events]\n"
+                + "Format: Start, End, Text\n"
+                + "Dialogue: 0:00:02.00,0:00:03.00,one, two, three\n"
+                + "Dialogue: broken\n");
+        assertEquals(1, cues.size());
+        assertCue(cues.get(0), 1, 2000, 3000, "one, two, three");
+    }
+}
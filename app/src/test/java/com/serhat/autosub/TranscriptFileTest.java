@@ -0,0 +1,142 @@
+package com.serhat.autosub;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TranscriptFileTest {
+
+    private static File writeTemp(byte[] bytes) throws IOException {
+        File file = File.createTempFile("transcript", "." + TranscriptFile.EXTENSION);
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        return file;
+    }
+
+    private static byte[] encode(List<SubtitleGenerator.SubtitleEntry> cues, WordTimeline words)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TranscriptFile.write(cues, words, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void writeAndOpen_roundTripsWordsAndCues() throws IOException {
+        String[] vocabulary = {"the", "a", "caf\u00e9", "na\u00efve", "\u65e5\u672c", "word", "\ud83d\ude00", ""};
+        Random random = new Random(24);
+        WordTimeline words = new WordTimeline();
+        int startMs = 0;
+        for (int i = 0; i < 5000; i++) {
+            // Occasional overlaps make the start deltas negative.
+            startMs += random.nextInt(10) == 0 ? -random.nextInt(200) : random.nextInt(3000);
+            int endMs = startMs + random.nextInt(1500);
+            words.addWord(vocabulary[random.nextInt(vocabulary.length)], startMs, endMs, random.nextFloat());
+            if (random.nextInt(12) == 0) {
+                words.endUtterance();
+            }
+        }
+        words.endUtterance();
+
+        List<SubtitleGenerator.SubtitleEntry> cues = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            boolean hasRange = i % 3 != 0;
+            cues.add(new SubtitleGenerator.SubtitleEntry(i + 1, i * 2000, i * 2000 + 1800,
+                    "cue " + i + " \u00e9\nline two", hasRange ? i * 10 : -1, hasRange ? 10 : 0));
+        }
+
+        TranscriptFile file = TranscriptFile.open(writeTemp(encode(cues, words)));
+        assertEquals(words.size(), file.getWordCount());
+        assertEquals(cues.size(), file.getCueCount());
+
+        WordTimeline read = file.readTimeline();
+        assertEquals(words.size(), read.size());
+        for (int i = 0; i < words.size(); i++) {
+            assertEquals(words.getWord(i), read.getWord(i));
+            assertEquals(words.getStartMs(i), read.getStartMs(i));
+            assertEquals(words.getEndMs(i), read.getEndMs(i));
+            assertEquals(words.getConfidence(i), read.getConfidence(i), 0.5f / 255);
+        }
+        assertEquals(words.utteranceCount(), read.utteranceCount());
+        for (int u = 0; u < words.utteranceCount(); u++) {
+            assertEquals(words.utteranceStart(u), read.utteranceStart(u));
+            assertEquals(words.utteranceEnd(u), read.utteranceEnd(u));
+        }
+
+        List<SubtitleGenerator.SubtitleEntry> readCues = file.readCues();
+        assertEquals(cues.size(), readCues.size());
+        for (int i = 0; i < cues.size(); i++) {
+            SubtitleGenerator.SubtitleEntry expected = cues.get(i);
+            SubtitleGenerator.SubtitleEntry actual = readCues.get(i);
+            assertEquals(i + 1, actual.getNumber());
+            assertEquals(expected.getStartMs(), actual.getStartMs());
+            assertEquals(expected.getEndMs(), actual.getEndMs());
+            assertEquals(expected.getText(), actual.getText());
+            assertEquals(expected.getFirstWord(), actual.getFirstWord());
+            assertEquals(expected.getWordCount(), actual.getWordCount());
+        }
+    }
+
+    @Test
+    public void writeAndOpen_withoutWords() throws IOException {
+        List<SubtitleGenerator.SubtitleEntry> cues = Arrays.asList(
+                new SubtitleGenerator.SubtitleEntry(1, 0, 1000, "only cue"));
+        TranscriptFile file = TranscriptFile.open(writeTemp(encode(cues, null)));
+        assertEquals(0, file.getWordCount());
+        assertEquals(0, file.readTimeline().size());
+        assertEquals("only cue", file.readCues().get(0).getText());
+        assertEquals(-1, file.readCues().get(0).getFirstWord());
+
+        TranscriptFile empty = TranscriptFile.open(writeTemp(encode(
+                Collections.<SubtitleGenerator.SubtitleEntry>emptyList(), new WordTimeline())));
+        assertEquals(0, empty.getCueCount());
+        assertTrue(empty.readCues().isEmpty());
+        assertEquals(0, empty.readTimeline().utteranceCount());
+    }
+
+    @Test
+    public void open_rejectsTruncatedAndForeignFiles() throws IOException {
+        WordTimeline words = new WordTimeline();
+        words.addWord("hello", 0, 500, 1f);
+        words.endUtterance();
+        byte[] bytes = encode(Arrays.asList(new SubtitleGenerator.SubtitleEntry(1, 0, 500, "hello", 0, 1)), words);
+
+        assertOpenFails(Arrays.copyOf(bytes, 20));
+        assertOpenFails("WEBVTT\n\n00:00.000 --> 00:01.000\nnot a transcript file\n".getBytes("UTF-8"));
+        assertOpenFails(new byte[0]);
+
+        byte[] wrongVersion = bytes.clone();
+        wrongVersion[5]++;
+        assertOpenFails(wrongVersion);
+
+        TranscriptFile truncated = TranscriptFile.open(writeTemp(Arrays.copyOf(bytes, bytes.length - 3)));
+        try {
+            truncated.readCues();
+            fail("Expected a truncated cue section to be rejected");
+        } catch (IOException expected) {
+            // Expected.
+        }
+    }
+
+    private static void assertOpenFails(byte[] bytes) throws IOException {
+        File file = writeTemp(bytes);
+        try {
+            TranscriptFile.open(file);
+            fail("Expected " + bytes.length + " bytes to be rejected");
+        } catch (IOException expected) {
+            // Expected.
+        }
+    }
+}
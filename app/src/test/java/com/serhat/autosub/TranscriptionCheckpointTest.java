@@ -0,0 +1,163 @@
+package com.serhat.autosub;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class TranscriptionCheckpointTest {
+
+    /** Eight utterances of one to four words, with a non-ASCII word now and then. */
+    private static WordTimeline utterances() {
+        WordTimeline timeline = new WordTimeline();
+        int ms = 0;
+        for (int u = 0; u < 8; u++) {
+            for (int w = 0; w <= u % 4; w++) {
+                timeline.addWord(w == 1 ? "caf\u00e9" : "word" + u + "_" + w, ms, ms + 300, 0.25f * (w + 1));
+                ms += 400;
+            }
+            timeline.endUtterance();
+        }
+        return timeline;
+    }
+
+    /** The first {@code count} utterances of {@code timeline}. */
+    private static WordTimeline prefix(WordTimeline timeline, int count) {
+        WordTimeline result = new WordTimeline();
+        for (int u = 0; u < count; u++) {
+            for (int i = timeline.utteranceStart(u); i < timeline.utteranceEnd(u); i++) {
+                result.addWord(timeline, i, timeline.getStartMs(i), timeline.getEndMs(i));
+            }
+            result.endUtterance();
+        }
+        return result;
+    }
+
+    private static void assertSameTimeline(WordTimeline expected, WordTimeline actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getWord(i), actual.getWord(i));
+            assertEquals(expected.getStartMs(i), actual.getStartMs(i));
+            assertEquals(expected.getEndMs(i), actual.getEndMs(i));
+            assertEquals(expected.getConfidence(i), actual.getConfidence(i), 0f);
+        }
+        assertEquals(expected.utteranceCount(), actual.utteranceCount());
+        for (int u = 0; u < expected.utteranceCount(); u++) {
+            assertEquals(expected.utteranceEnd(u), actual.utteranceEnd(u));
+        }
+    }
+
+    /**
+     * Writes records holding utterances [0, 2), [2, 5) and [5, 8), resuming at 1, 2 and 3 seconds,
+     * and returns the file length after each record.
+     */
+    private static long[] writeRecords(File file, WordTimeline all) throws IOException {
+        long[] lengths = new long[3];
+        int[] ends = {2, 5, 8};
+        try (TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint(file)) {
+            for (int r = 0; r < ends.length; r++) {
+                checkpoint.append(prefix(all, ends[r]), (r + 1) * 1000);
+                lengths[r] = file.length();
+            }
+        }
+        return lengths;
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("checkpoint", ".ckpt");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void restore_returnsEveryCompleteRecord() throws IOException {
+        WordTimeline all = utterances();
+        File file = tempFile();
+        writeRecords(file, all);
+
+        TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint(file);
+        assertSameTimeline(all, checkpoint.restore());
+        assertEquals(3000, checkpoint.getResumeMs());
+    }
+
+    @Test
+    public void restore_dropsRecordTruncatedMidway() throws IOException {
+        WordTimeline all = utterances();
+        File file = tempFile();
+        long[] lengths = writeRecords(file, all);
+
+        for (long cut = lengths[1] + 1; cut < lengths[2]; cut += 7) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(cut);
+            }
+            TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint(file);
+            assertSameTimeline(prefix(all, 5), checkpoint.restore());
+            assertEquals(2000, checkpoint.getResumeMs());
+        }
+    }
+
+    @Test
+    public void restore_stopsAtCorruptRecordEnd() throws IOException {
+        WordTimeline all = utterances();
+        File file = tempFile();
+        long[] lengths = writeRecords(file, all);
+
+        // Flip a byte of the second record's end marker; the third record is then unreachable.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(lengths[1] - 2);
+            int b = raf.read();
+            raf.seek(lengths[1] - 2);
+            raf.write(b ^ 0x40);
+        }
+        TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint(file);
+        assertSameTimeline(prefix(all, 2), checkpoint.restore());
+        assertEquals(1000, checkpoint.getResumeMs());
+    }
+
+    @Test
+    public void append_afterTornRecordReplacesIt() throws IOException {
+        WordTimeline all = utterances();
+        File file = tempFile();
+        long[] lengths = writeRecords(file, all);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(lengths[2] - 3);
+        }
+
+        try (TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint(file)) {
+            WordTimeline restored = checkpoint.restore();
+            assertSameTimeline(prefix(all, 5), restored);
+            for (int u = 5; u < all.utteranceCount(); u++) {
+                for (int i = all.utteranceStart(u); i < all.utteranceEnd(u); i++) {
+                    restored.addWord(all, i, all.getStartMs(i), all.getEndMs(i));
+                }
+                restored.endUtterance();
+            }
+            checkpoint.append(restored, 4000);
+        }
+        assertEquals(lengths[2], file.length());
+
+        TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint(file);
+        assertSameTimeline(all, checkpoint.restore());
+        assertEquals(4000, checkpoint.getResumeMs());
+    }
+
+    @Test
+    public void restore_withoutCompleteRecord() throws IOException {
+        WordTimeline all = utterances();
+        File file = tempFile();
+        long[] lengths = writeRecords(file, all);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(lengths[0] - 1);
+        }
+        TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint(file);
+        assertNull(checkpoint.restore());
+        assertEquals(0, checkpoint.getResumeMs());
+
+        assertTrue(file.delete());
+        assertNull(new TranscriptionCheckpoint(file).restore());
+    }
+}
@@ -0,0 +1,114 @@
+package com.serhat.autosub;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+public class VoiceActivityDetectorTest {
+    private static final int FRAME_BYTES = 640;
+
+    private static void silence(ByteArrayOutputStream out, int ms) {
+        out.write(new byte[ms * 32], 0, ms * 32);
+    }
+
+    /** A 200 Hz tone: loud and with few zero crossings, so every frame counts as speech. */
+    private static void tone(ByteArrayOutputStream out, int ms) {
+        for (int i = 0; i < ms * 16; i++) {
+            short sample = (short) (5000 * Math.sin(2 * Math.PI * 200 * i / 16000.0));
+            out.write(sample & 0xff);
+            out.write((sample >> 8) & 0xff);
+        }
+    }
+
+    /** Feeds {@code pcm} in uneven chunks that straddle frame boundaries and returns the bytes kept. */
+    private static int feed(VoiceActivityDetector vad, byte[] pcm) {
+        int kept = 0;
+        byte[] chunk = new byte[1000];
+        for (int pos = 0; pos < pcm.length; pos += chunk.length) {
+            int n = Math.min(chunk.length, pcm.length - pos);
+            System.arraycopy(pcm, pos, chunk, 0, n);
+            kept += vad.process(chunk, n);
+        }
+        return kept;
+    }
+
+    @Test
+    public void process_gatesSilenceAndKeepsPreRollAndHangover() {
+        VoiceActivityDetector vad = new VoiceActivityDetector();
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        silence(pcm, 2000);
+        assertEquals(0, feed(vad, pcm.toByteArray()));
+
+        pcm.reset();
+        tone(pcm, 1000);
+        // 300 ms of pre-roll comes out ahead of the first speech frame.
+        assertEquals((15 + 50) * FRAME_BYTES, feed(vad, pcm.toByteArray()));
+
+        pcm.reset();
+        silence(pcm, 2000);
+        // 600 ms of hangover follows the last speech frame.
+        assertEquals(30 * FRAME_BYTES, feed(vad, pcm.toByteArray()));
+
+        assertEquals(5000, vad.getProcessedMs());
+        assertEquals(5000 - (15 + 50 + 30) * 20, vad.getSkippedMs());
+    }
+
+    @Test
+    public void process_rejectsHighZeroCrossingNoise() {
+        VoiceActivityDetector vad = new VoiceActivityDetector();
+        byte[] noise = new byte[32000];
+        for (int i = 0; i < noise.length; i += 2) {
+            short sample = (short) ((i / 2) % 2 == 0 ? 2000 : -2000);
+            noise[i] = (byte) (sample & 0xff);
+            noise[i + 1] = (byte) ((sample >> 8) & 0xff);
+        }
+        assertEquals(0, feed(vad, noise));
+    }
+
+    @Test
+    public void flush_passesOnPreRollAndPartialFrame() {
+        VoiceActivityDetector vad = new VoiceActivityDetector();
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        silence(pcm, 100);
+        pcm.write(new byte[10], 0, 10);
+        assertEquals(0, feed(vad, pcm.toByteArray()));
+        assertEquals(5 * FRAME_BYTES + 10, vad.flush());
+        assertEquals(0, vad.flush());
+    }
+
+    @Test
+    public void toSourceSeconds_mapsAcrossRemovedGaps() {
+        VoiceActivityDetector vad = new VoiceActivityDetector();
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        silence(pcm, 2000);
+        tone(pcm, 1000);
+        silence(pcm, 3000);
+        tone(pcm, 1000);
+        silence(pcm, 1000);
+        feed(vad, pcm.toByteArray());
+
+        // Fed audio starts with the pre-roll 300 ms before the first tone at 2.0 s.
+        assertEquals(1.7, vad.toSourceSeconds(0), 1e-9);
+        assertEquals(2.2, vad.toSourceSeconds(0.5), 1e-9);
+        // The hangover after the first tone is fed contiguously.
+        assertEquals(3.0, vad.toSourceSeconds(1.3), 1e-9);
+        assertEquals(3.58, vad.toSourceSeconds(1.88), 1e-9);
+        // 95 frames in, the second tone's pre-roll starts 300 ms before it, at 5.7 s.
+        assertEquals(5.7, vad.toSourceSeconds(1.9), 1e-9);
+        assertEquals(6.5, vad.toSourceSeconds(2.7), 1e-9);
+
+        assertEquals(8000, vad.getProcessedMs());
+        assertEquals(8000 - 2 * (15 + 50 + 30) * 20, vad.getSkippedMs());
+    }
+
+    @Test
+    public void toSourceSeconds_isIdentityWithoutGaps() {
+        VoiceActivityDetector vad = new VoiceActivityDetector();
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        tone(pcm, 500);
+        assertEquals(25 * FRAME_BYTES, feed(vad, pcm.toByteArray()));
+        assertEquals(0.37, vad.toSourceSeconds(0.37), 1e-9);
+    }
+}
@@ -0,0 +1,85 @@
+package com.serhat.autosub;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class VoskResultParserTest {
+
+    private static String result(String start, String end, String conf, String word) {
+        return "{\n  \"result\" : [{\n      \"conf\" : " + conf + ",\n      \"end\" : " + end
+                + ",\n      \"start\" : " + start + ",\n      \"word\" : \"" + word + "\"\n    }],\n"
+                + "  \"text\" : \"" + word + "\"\n}";
+    }
+
+    @Test
+    public void wordTimes_matchParseDouble() {
+        VoskResultParser parser = new VoskResultParser();
+        WordTimeline timeline = new WordTimeline();
+        Random random = new Random(20);
+        for (int i = 0; i < 20000; i++) {
+            int fractionDigits = random.nextInt(7);
+            String format = "%." + fractionDigits + "f";
+            String start = String.format(Locale.US, format, random.nextDouble() * 20000);
+            String end = String.format(Locale.US, format, random.nextDouble() * 20000);
+            String conf = String.format(Locale.US, "%.6f", random.nextDouble());
+
+            timeline.clear();
+            assertEquals(1, parser.parseWords(result(start, end, conf, "w"), timeline));
+            assertEquals(start, (int) (Double.parseDouble(start) * 1000), timeline.getStartMs(0));
+            assertEquals(end, (int) (Double.parseDouble(end) * 1000), timeline.getEndMs(0));
+            assertEquals(conf, (float) Double.parseDouble(conf), timeline.getConfidence(0), 0f);
+        }
+    }
+
+    @Test
+    public void wordTimes_matchParseDoubleForEdgeCases() {
+        String[] numbers = {"0", "0.0", "0.000000", "1", "1.5", "0.29", "0.57", "4.35", "1e-3", "2.5E2",
+                "123456789.123456789", "0.1234567890123456789", "-0.5"};
+        VoskResultParser parser = new VoskResultParser();
+        WordTimeline timeline = new WordTimeline();
+        for (String number : numbers) {
+            timeline.clear();
+            assertEquals(1, parser.parseWords(result(number, number, number, "w"), timeline));
+            assertEquals(number, (int) (Double.parseDouble(number) * 1000), timeline.getStartMs(0));
+            assertEquals(number, (float) Double.parseDouble(number), timeline.getConfidence(0), 0f);
+        }
+    }
+
+    @Test
+    public void parseWords_keepsOrderEscapesAndSkipsUnknownKeys() {
+        String json = "{\"alternatives\":[{\"x\":[1,{\"y\":\"]}\"}]}],\"result\":["
+                + "{\"word\":\"caf\\u00e9\",\"start\":0.5,\"end\":0.9,\"extra\":{\"a\":[1,2]}},"
+                + "{\"start\":1.0,\"end\":1.25,\"word\":\"say \\\"hi\\\"\"}],\"text\":\"ignored\"}";
+        WordTimeline timeline = new WordTimeline();
+        assertEquals(2, new VoskResultParser().parseWords(json, timeline));
+        assertEquals("caf\u00e9", timeline.getWord(0));
+        assertEquals(500, timeline.getStartMs(0));
+        assertEquals(900, timeline.getEndMs(0));
+        assertEquals(1f, timeline.getConfidence(0), 0f);
+        assertEquals("say \"hi\"", timeline.getWord(1));
+        assertEquals(1000, timeline.getStartMs(1));
+        assertEquals(1250, timeline.getEndMs(1));
+    }
+
+    @Test
+    public void parseWords_emptyResults() {
+        VoskResultParser parser = new VoskResultParser();
+        WordTimeline timeline = new WordTimeline();
+        assertEquals(0, parser.parseWords("{}", timeline));
+        assertEquals(0, parser.parseWords("{\"text\" : \"\"}", timeline));
+        assertEquals(0, parser.parseWords("{\"result\" : [], \"text\" : \"\"}", timeline));
+        assertEquals(0, timeline.size());
+    }
+
+    @Test
+    public void parsePartial_returnsPartialText() {
+        VoskResultParser parser = new VoskResultParser();
+        assertEquals("hello there", parser.parsePartial("{\n  \"partial\" : \"hello there\"\n}"));
+        assertEquals("", parser.parsePartial("{\n  \"partial\" : \"\"\n}"));
+        assertEquals("", parser.parsePartial("{}"));
+    }
+}